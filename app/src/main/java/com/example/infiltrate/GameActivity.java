@@ -1,8 +1,8 @@
 package com.example.infiltrate;
 
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.util.Pair;
 
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
@@ -13,20 +13,50 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.ScrollView;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import com.example.infiltrate.engine.Game;
+import com.example.infiltrate.engine.GameLog;
+import com.example.infiltrate.engine.GameRandom;
+import com.example.infiltrate.engine.StatsStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GameActivity extends AppCompatActivity {
 
-    ArrayList<Pair<Game.Role,int[]>> roleRestrictions = new ArrayList<Pair<Game.Role,int[]>>();
     ArrayList<String> playerList = new ArrayList<String>();
     Game g;
+    GameLog log; // record of every turn, saved when the game ends
+    private static final int FIRST_TARGET_ID = 100; // radio button id of the target with player id 0
+    private static final int MAX_BUNDLE_LOG_BYTES = 32 * 1024; // larger logs are restored from the checkpoint file
+    private static final int MAX_SAVED_LOGS = 50; // older logs of finished games are deleted
+    // Writes the checkpoint files in the order they were asked for, off the main thread. It is
+    // shared by every GameActivity so a recreated activity can wait for the old one's writes.
+    private static final ExecutorService CHECKPOINT_WRITER = Executors.newSingleThreadExecutor();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_game);
 
+        // Continue the game from before the activity was recreated, if there was one
+        if (savedInstanceState != null && restoreGame(savedInstanceState)) {
+            updateLayout();
+            return;
+        }
 
         // Get playerList and roleRestrictions
         Intent intent = getIntent();
@@ -41,17 +71,27 @@ public class GameActivity extends AppCompatActivity {
         if (intent.getIntArrayExtra("ROLE_RESTRICTIONS_MIN") != null) {
             minimums = intent.getIntArrayExtra("ROLE_RESTRICTIONS_MIN");
         } else {startActivity(new Intent(GameActivity.this,RoleSetupActivity.class));}
-        // Parse through maximums and minimums to form roleRestrictions
-        for (int i=0;i<Game.Role.values().length;i++) {
-            Pair<Game.Role,int[]> item = new Pair<Game.Role,int[]>(Game.Role.values()[i],
-                    new int[]{minimums[i],maximums[i]});
-            roleRestrictions.add(item);
-        }
-        // Construct the game object
-        g = new Game(playerList,roleRestrictions);
+        // Construct the game object from a new log so the game can be replayed later
+        log = new GameLog(new GameRandom().nextLong(),playerList,minimums,maximums);
+        g = log.createGame();
+        writeCheckpoint(false);
+        writeState();
         updateLayout();
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (log == null) return;
+        // Small logs go straight into the bundle, larger ones are read from the checkpoint file
+        // once its queued writes are done
+        if (log.getByteCount() <= MAX_BUNDLE_LOG_BYTES) outState.putByteArray("GAME_LOG", log.toByteArray());
+        else {
+            writeCheckpoint(true);
+            outState.putString("GAME_LOG_FILE", getCheckpointFile().getPath());
+        }
+    }
+
     public void showRole(View v) {
 
         TextView roleTextView = (TextView)findViewById(R.id.role_tv);
@@ -72,17 +112,27 @@ public class GameActivity extends AppCompatActivity {
         // get selected radio button from radioGroup
         int selectedId = rg.getCheckedRadioButtonId();
         if (selectedId != -1) {
-            // find the radiobutton by returned id
-            RadioButton selectedRadioButton = (RadioButton) findViewById(selectedId);
+            // The radio button id holds the player id of the target
+            int target = selectedId - FIRST_TARGET_ID;
 
             // Register the selection with the Game class
-            g.setSelection(g.getCurrentPlayerName(), selectedRadioButton.getText().toString());
+            int player = g.getCurrentPlayer();
+            Game.Role role = g.getCurrentPlayerRole();
+            g.setSelection(player, target);
             // Do any necessary actions and end the player's turn
-            g.doTurn();
+            boolean success = g.doTurn();
             // Check win
-            if (g.checkWin()) endGame(g.getWinningSide());
+            boolean won = g.checkWin();
+            log.recordTurn(player, role, target, success, won);
+            writeCheckpoint(true);
+            if (won) {
+                endGame(g.getWinningSide());
+                return;
+            }
             // Convert someone to an ordinary role if necessary
             g.balance();
+            // Once a round, so a restore never replays more than a round of turns
+            if (log.getTurnCount() % g.getPlayerCount() == 0) writeState();
             // Update the layout (BEGINNING OF NEW TURN BLOCK)
             updateLayout();
         } else {showRole(v);}
@@ -111,23 +161,196 @@ public class GameActivity extends AppCompatActivity {
         ScrollView scrollView = (ScrollView)findViewById(R.id.radio_group_scroll_view);
         scrollView.setVisibility(View.INVISIBLE);
         // Update the radio buttons
-        ArrayList<String> legalTargets = g.getLegalTargets(g.getCurrentPlayerName());
-        final RadioButton[] rbOptions = new RadioButton[legalTargets.size()];
+        BitSet legalTargets = g.getLegalTargets(g.getCurrentPlayer(), new BitSet());
         RadioGroup rg = findViewById(R.id.target_radio_group); // get the RadioGroup
         rg.clearCheck();
         rg.removeAllViews(); // Remove all the current radio buttons
         rg.setOrientation(RadioGroup.VERTICAL);
-        for(int i=0; i<legalTargets.size(); i++){
-            rbOptions[i]  = new RadioButton(this);
-            rbOptions[i].setText(legalTargets.get(i));
-            rbOptions[i].setId(100+i);
-            rg.addView(rbOptions[i]);
+        for (int p=legalTargets.nextSetBit(0);p>=0;p=legalTargets.nextSetBit(p+1)) {
+            addTargetButton(rg, p, g.getPlayerName(p));
         }
+        addTargetButton(rg, Game.NO_TARGET, "");
+    }
+
+    private void addTargetButton(RadioGroup rg, int target, String text) {
+        RadioButton rb = new RadioButton(this);
+        rb.setText(text);
+        rb.setId(FIRST_TARGET_ID + target);
+        rg.addView(rb);
     }
     private void endGame(String winningSide) {
+        saveLog();
+        recordStats();
+        // The finished game is in the saved logs now, so it no longer needs a checkpoint
+        deleteCheckpoint();
         Intent intent = new Intent(GameActivity.this,TitleScreenActivity.class);
         intent.putExtra("WINNING_SIDE",winningSide);
+        intent.putStringArrayListExtra("PLAYER_LIST", g.getPlayerNames());
         startActivity(intent);
+        // Back must not return to the finished game, whose next turn would record it again
+        finish();
+    }
+
+    /**
+     * Brings the checkpoint file of the current game up to date with the log. The bytes are taken
+     * from the log now and written by CHECKPOINT_WRITER.
+     * @param append - Whether to only append the turns since the last write rather than
+     *               rewriting the whole file. Nothing is appended if the file has been deleted,
+     *               since the start of the log would be missing.
+     */
+    private void writeCheckpoint(final boolean append) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            if (append) log.flush(bytes);
+            else log.write(bytes);
+        } catch (IOException e) {
+            throw new AssertionError("Something Broke!", e);
+        }
+        final byte[] b = bytes.toByteArray();
+        final File file = getCheckpointFile();
+        CHECKPOINT_WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (append && !file.exists()) return;
+                try (OutputStream out = new FileOutputStream(file, append)) {
+                    out.write(b);
+                } catch (IOException e) {
+                    // A checkpoint which failed to write is rejected by restoreGame
+                }
+            }
+        });
+    }
+
+    /**
+     * Saves the state of the game next to the checkpoint file, so restoreGame only has to replay
+     * the turns logged since. The state is taken now and written by CHECKPOINT_WRITER, through a
+     * temporary file so a half written state never replaces the last one.
+     */
+    private void writeState() {
+        final byte[] state = log.saveState(g);
+        final File file = getStateFile();
+        CHECKPOINT_WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                File temp = new File(file.getPath() + ".tmp");
+                try (OutputStream out = new FileOutputStream(temp)) {
+                    out.write(state);
+                } catch (IOException e) {
+                    return;
+                }
+                temp.renameTo(file);
+            }
+        });
+    }
+
+    /**
+     * Deletes the checkpoint files once the writes already asked for are done.
+     */
+    private void deleteCheckpoint() {
+        final File checkpoint = getCheckpointFile();
+        final File state = getStateFile();
+        CHECKPOINT_WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                checkpoint.delete();
+                state.delete();
+            }
+        });
+    }
+
+    private File getCheckpointFile() {
+        return new File(getFilesDir(), "current-game.log");
+    }
+
+    private File getStateFile() {
+        return new File(getFilesDir(), "current-game.state");
+    }
+
+    /**
+     * Rebuilds the game from the log saved by onSaveInstanceState, starting from the state saved
+     * by writeState if it is one of this game and replaying only the turns since.
+     * @param savedInstanceState - The bundle passed to onCreate.
+     * @return - False if there was no saved game or it could not be read.
+     */
+    private boolean restoreGame(Bundle savedInstanceState) {
+        try {
+            // The previous activity's writes have to finish before its files are read
+            CHECKPOINT_WRITER.submit(new Runnable() {
+                @Override
+                public void run() {}
+            }).get();
+            GameLog restored;
+            byte[] bytes = savedInstanceState.getByteArray("GAME_LOG");
+            String path = savedInstanceState.getString("GAME_LOG_FILE");
+            if (bytes != null) restored = GameLog.fromByteArray(bytes);
+            else if (path != null) {
+                try (InputStream in = new FileInputStream(path)) {
+                    restored = GameLog.read(in);
+                }
+            } else return false;
+            g = restoreState(restored);
+            log = restored;
+            // Rewrite the checkpoint file so later turns are appended to the right log
+            writeCheckpoint(false);
+            return true;
+        } catch (IOException | RuntimeException | InterruptedException | ExecutionException e) {
+            // A corrupt log can fail anywhere in the replay, so start a new game instead
+            Toast.makeText(getApplicationContext(), "Could not restore the game", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+    }
+
+    /**
+     * @param restored - The log of the game.
+     * @return - The game after every turn of the log, from the saved state if it can be used.
+     */
+    private Game restoreState(GameLog restored) {
+        File file = getStateFile();
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                byte[] state = new byte[(int) file.length()];
+                in.readFully(state);
+                return restored.restore(state);
+            } catch (IOException | RuntimeException e) {
+                // Not a state of this game, or a bad one, so replay every turn instead
+            }
+        }
+        return restored.replay(restored.getTurnCount());
+    }
+
+    /**
+     * Adds the finished game to every player's lifetime statistics.
+     */
+    private void recordStats() {
+        try {
+            new StatsStore(getStatsDir(this)).record(log, g);
+        } catch (IOException e) {
+            Toast.makeText(getApplicationContext(), "Could not save player stats", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    static File getStatsDir(Context context) {
+        return new File(context.getFilesDir(), "stats");
+    }
+
+    /**
+     * Saves the game log into the logs folder of the app's files, keeping only the newest
+     * MAX_SAVED_LOGS logs. Lifetime stats are kept by StatsStore, so old logs are not needed.
+     */
+    private void saveLog() {
+        File dir = new File(getFilesDir(), "logs");
+        dir.mkdirs();
+        File file = new File(dir, "game-" + System.currentTimeMillis() + ".log");
+        try (OutputStream out = new FileOutputStream(file)) {
+            log.write(out);
+        } catch (IOException e) {
+            Toast.makeText(getApplicationContext(), "Could not save game log", Toast.LENGTH_SHORT).show();
+        }
+        // The names hold the time each game ended, so they sort oldest first
+        File[] logs = dir.listFiles();
+        if (logs == null || logs.length <= MAX_SAVED_LOGS) return;
+        Arrays.sort(logs);
+        for (int i=0;i<logs.length-MAX_SAVED_LOGS;i++) logs[i].delete();
     }
 
 
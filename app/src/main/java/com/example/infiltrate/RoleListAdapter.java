@@ -11,6 +11,8 @@ import android.widget.TextView;
 import androidx.core.util.Pair;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.infiltrate.engine.Game;
+
 import java.util.ArrayList;
 
 public class RoleListAdapter extends RecyclerView.Adapter<RoleListAdapter.ViewHolder>{
@@ -5,9 +5,15 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.content.Intent;
 import android.os.Bundle;
 import android.text.method.LinkMovementMethod;
+import android.text.method.ScrollingMovementMethod;
 import android.view.View;
 import android.widget.TextView;
 
+import com.example.infiltrate.engine.StatsStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
 public class TitleScreenActivity extends AppCompatActivity {
 
     private String winningSide;
@@ -27,6 +33,31 @@ public class TitleScreenActivity extends AppCompatActivity {
             winningSideTextView.setText(winningSide + " WON");
             winningSideTextView.setVisibility(View.VISIBLE);
         }
+        if (getIntent().getStringArrayListExtra("PLAYER_LIST") != null) {
+            showStats(getIntent().getStringArrayListExtra("PLAYER_LIST"));
+        }
+    }
+
+    /**
+     * Shows the lifetime statistics of the players of the game that just ended. Opening the
+     * store only reads its index, so this is quick however many games have been played.
+     * @param playerNames - The names of the players.
+     */
+    private void showStats(ArrayList<String> playerNames) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            StatsStore store = new StatsStore(GameActivity.getStatsDir(this));
+            for (String name : playerNames) {
+                StatsStore.PlayerStats stats = store.getStats(name);
+                if (stats != null) sb.append(stats).append("\n\n");
+            }
+        } catch (IOException e) {
+            return;
+        }
+        TextView statsTextView = findViewById(R.id.player_stats);
+        statsTextView.setText(sb.toString().trim());
+        statsTextView.setMovementMethod(new ScrollingMovementMethod());
+        statsTextView.setVisibility(View.VISIBLE);
     }
 
     public void onPlayBtnClicked(View v) {
@@ -0,0 +1,84 @@
+package com.example.infiltrate.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the Game constructor and the queries made on every turn. Each game is
+ * played for a number of turns (the turn depth) with real targets before it is measured so that
+ * the cost of a long history of kills and attacks shows up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    @Param({"5", "50", "200", "1000"})
+    public int players;
+
+    @Param({"0", "100", "1000"})
+    public int depth;
+
+    private Game game;
+    private final BitSet targets = new BitSet();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = newGame(players, depth);
+        game.balance();
+    }
+
+    @Benchmark
+    public Game constructor() {
+        return newGame(players, 0);
+    }
+
+    @Benchmark
+    public BitSet getLegalTargets() {
+        return game.getLegalTargets(game.getCurrentPlayer(), targets);
+    }
+
+    @Benchmark
+    public Game fork() {
+        return game.fork(new GameRandom(depth));
+    }
+
+    @Benchmark
+    public boolean checkWin() {
+        return game.checkWin();
+    }
+
+    @Benchmark
+    public void balance() {
+        game.balance();
+    }
+
+    /**
+     * Creates a game dealt with the realistic role limits of TestGames, then plays the given
+     * number of turns with random targets, none of which finish the game.
+     * @param players - Number of players.
+     * @param depth - Number of turns to play.
+     * @return - The new game.
+     */
+    static Game newGame(int players, int depth) {
+        // A fixed seed keeps the measured games the same between runs
+        return TestGames.advance(TestGames.newGame(players, players), depth, new Random(players));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.infiltrate.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of doTurn on realistically dealt games. Before each iteration a pool of BATCH
+ * games is forked from a few games played to the turn depth, each a few turns further on and
+ * with its current player selecting a random legal target. An iteration plays one turn of every
+ * game in the pool, so the score is the time for BATCH turns across a mix of roles and targets.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = TurnBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = TurnBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Thread)
+public class TurnBenchmark {
+    static final int BATCH = 1000; // turns measured per iteration, one per pooled game
+    private static final int BASES = 8; // games played to the turn depth, which the pool forks
+    private static final int SPREAD = 16; // most extra turns a pooled game is played
+
+    @Param({"5", "50", "200", "1000"})
+    public int players;
+
+    @Param({"0", "100", "1000"})
+    public int depth;
+
+    private Game[] bases;
+    private final Game[] pool = new Game[BATCH];
+    private int next;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        bases = new Game[BASES];
+        for (int i=0;i<BASES;i++) {
+            // Fixed seeds keep the measured games the same between runs
+            Game game = TestGames.newGame(players, players * BASES + i);
+            bases[i] = TestGames.advance(game, depth, new Random(i));
+        }
+    }
+
+    // Every turn changes its game, so each iteration gets a fresh pool
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        Random random = new Random(iteration++);
+        BitSet legal = new BitSet();
+        for (int i=0;i<BATCH;i++) {
+            Game game = bases[i % BASES].fork(new GameRandom(random.nextLong()));
+            TestGames.advance(game, random.nextInt(SPREAD), random);
+            int player = game.getCurrentPlayer();
+            game.setSelection(player, pickTarget(game.getLegalTargets(player, legal), random));
+            pool[i] = game;
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean doTurn() {
+        return pool[next++].doTurn();
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * @return - A uniformly random target from legal, or NO_TARGET if it is empty.
+     */
+    private static int pickTarget(BitSet legal, Random random) {
+        int count = legal.cardinality();
+        if (count == 0) return Game.NO_TARGET;
+        int target = legal.nextSetBit(0);
+        for (int skip=random.nextInt(count);skip>0;skip--) target = legal.nextSetBit(target + 1);
+        return target;
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.infiltrate.engine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A computer-controlled player which chooses its target by Monte Carlo tree search. The bot only
+ * uses what its player is shown: their own role, the roles revealed in their messages, which
+ * players they can target and the role restrictions every player agreed to. Every rollout plays
+ * a fork of the game in which everything else is guessed again (see Game.forget):
+ * 1. A starting deal and fresh role pools are drawn from the restrictions with RoleAssigner, so
+ *    roles follow the same prior as a real deal.
+ * 2. Known roles replace the dealt ones, and a dealt role which cannot be right because of who
+ *    the bot can target is swapped for one drawn from the fresh pools, a dead role of the same
+ *    side first (the player died since the deal).
+ * 3. Other players' pending targets and attacks are forgotten, except those aimed at a SPECTRE
+ *    bot by living players, which decide its legal targets.
+ * So the search never peeks at hidden roles, pools or selections.
+ *
+ * The search runs on every worker of a fork-join pool for a fixed time budget. Each worker keeps
+ * its own UCB1 statistics for the bot's possible targets (root parallelisation) and they are
+ * summed at the end, so a move never takes much longer than the budget once it starts. The
+ * budget starts when the search starts running rather than when it is submitted, so a search
+ * queued behind others on a busy pool still gets all of it. ForkJoinPool needs API level 21 when
+ * the engine runs on Android.
+ */
+public class BotPlayer {
+    /**
+     * Receives the target chosen by a search started with selectLater.
+     */
+    public interface Callback {
+        /**
+         * Called on a pool thread once the search is over.
+         * @param player - The id of the bot's player.
+         * @param target - The chosen target, or Game.NO_TARGET.
+         */
+        void onSelected(int player, int target);
+    }
+
+    private static final double EXPLORATION = Math.sqrt(2); // UCB1 exploration constant
+    private static final int ROLLOUT_TURNS_PER_PLAYER = 8; // longer rollouts are scored as unfinished
+    private static final int DEADLINE_CHECK_TURNS = 32; // turns between deadline checks in a rollout
+    private static final int ALL_KINDS = 15; // every bit of kindOf
+
+    private final long budgetNanos;
+    private final GameRandom random; // seeds the random source of each worker
+
+    /**
+     * BotPlayer constructor.
+     * @param budgetMillis - How long each move may search for.
+     * @param seed - Seed of the bot's random decisions. Moves still depend on how many rollouts
+     *             fit in the budget.
+     */
+    public BotPlayer(long budgetMillis, long seed) {
+        this.budgetNanos = budgetMillis * 1000000L;
+        this.random = new GameRandom(seed);
+    }
+
+    /**
+     * Chooses a target for a player, blocking for about the time budget.
+     * @param game - The game. It must not change until this returns.
+     * @param player - The id of the bot's player.
+     * @param pool - The pool whose workers run the rollouts.
+     * @return - The chosen target, or Game.NO_TARGET.
+     */
+    public int select(Game game, int player, ForkJoinPool pool) {
+        return pool.invoke(new Search(game, player, pool.getParallelism(), null));
+    }
+
+    /**
+     * Starts choosing a target for a player without blocking. Everything the search needs is
+     * copied out of the game before this returns, so the game can be used straight away.
+     * @param game - The game.
+     * @param player - The id of the bot's player.
+     * @param pool - The pool whose workers run the rollouts.
+     * @param callback - Receives the chosen target on a pool thread.
+     */
+    public void selectLater(Game game, int player, ForkJoinPool pool, Callback callback) {
+        pool.execute(new Search(game, player, pool.getParallelism(), callback));
+    }
+
+    /**
+     * One move's search, split into a Worker per pool thread.
+     */
+    private class Search extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+        private final int player;
+        private final int[] actions; // the player's legal targets, then Game.NO_TARGET
+        private final ArrayList<Worker> workers = new ArrayList<>();
+        private final Callback callback;
+
+        Search(Game game, int player, int workerCount, Callback callback) {
+            this.player = player;
+            this.callback = callback;
+            BitSet legal = game.getLegalTargets(player, new BitSet());
+            actions = new int[legal.cardinality() + 1];
+            for (int i=0,t=legal.nextSetBit(0);t>=0;i++,t=legal.nextSetBit(t+1)) actions[i] = t;
+            actions[actions.length - 1] = Game.NO_TARGET;
+
+            // Roles the bot knows: its own and the latest revealed in its messages, unless who it
+            // can target shows the player's role changed since
+            int n = game.getPlayerCount();
+            Game.Role[] known = new Game.Role[n];
+            for (int i=0;i<game.getPlayerMessageCount(player);i++) {
+                Message m = game.getPlayerMessageAt(player, i);
+                if (m.type == Message.Type.REVEAL) known[m.target] = m.role;
+            }
+            // The kinds of role each player can have, going by whether the bot can target them
+            Game.Role role = game.getPlayerRole(player);
+            int[] allowed = new int[n];
+            for (int p=0;p<n;p++) {
+                allowed[p] = legal.get(p) ? targetableKinds(role) : untargetableKinds(role);
+                if (known[p] != null && (allowed[p] & kindOf(known[p])) == 0) known[p] = null;
+            }
+            known[player] = role;
+
+            boolean citizen = role.isCitizen;
+            // Forks are made here so the workers never touch the caller's game
+            for (int i=0;i<workerCount;i++) {
+                GameRandom workerRandom;
+                synchronized (random) {
+                    workerRandom = random.split();
+                }
+                workers.add(new Worker(game.fork(workerRandom), player, citizen, actions,
+                        known, allowed, workerRandom));
+            }
+        }
+
+        @Override
+        protected Integer compute() {
+            long deadline = System.nanoTime() + budgetNanos;
+            for (Worker w : workers) w.deadline = deadline;
+            invokeAll(workers);
+            // The most visited target is the most trusted one, and no target if nothing ran
+            int best = actions.length - 1;
+            long bestVisits = 0;
+            double bestScore = 0;
+            for (int a=0;a<actions.length;a++) {
+                long visits = 0;
+                double score = 0;
+                for (Worker w : workers) {
+                    visits += w.visits[a];
+                    score += w.scores[a];
+                }
+                if (visits > bestVisits || (visits == bestVisits && score > bestScore)) {
+                    best = a;
+                    bestVisits = visits;
+                    bestScore = score;
+                }
+            }
+            if (callback != null) callback.onSelected(player, actions[best]);
+            return actions[best];
+        }
+    }
+
+    /**
+     * Runs rollouts on one pool thread until the deadline.
+     */
+    private static class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Game base; // this worker's own fork of the real game
+        private final int player;
+        private final boolean citizen; // the bot's side, which never changes
+        private final int[] actions;
+        private final Game.Role[] known; // roles the bot knows, null for the others
+        private final int[] allowed; // kinds of role each player can have, see kindOf
+        private long deadline; // set by Search.compute before the worker runs
+        private final GameRandom random;
+        private final long[] visits;
+        private final double[] scores; // summed rollout scores, 1 for a win
+        private final BitSet legal = new BitSet();
+        private final RoleAssigner assigner;
+        private final int[] order; // scratch turn order of each guessed deal
+        private final Game.Role[] guesses; // guessed role of each player id
+
+        Worker(Game base, int player, boolean citizen, int[] actions, Game.Role[] known, int[] allowed,
+               GameRandom random) {
+            this.base = base;
+            this.player = player;
+            this.citizen = citizen;
+            this.actions = actions;
+            this.known = known;
+            this.allowed = allowed;
+            this.assigner = base.getRoleAssigner();
+            this.order = new int[known.length];
+            this.guesses = new Game.Role[known.length];
+            this.random = random;
+            this.visits = new long[actions.length];
+            this.scores = new double[actions.length];
+        }
+
+        @Override
+        protected void compute() {
+            long total = 0;
+            while (System.nanoTime() < deadline) {
+                int a = chooseAction(total);
+                Game g = base.fork(random);
+                determinize(g);
+                double score = rollout(g, actions[a]);
+                if (Double.isNaN(score)) break;
+                visits[a]++;
+                scores[a] += score;
+                total++;
+            }
+        }
+
+        /**
+         * Picks the target to try next by UCB1, trying every target once first.
+         */
+        private int chooseAction(long total) {
+            int best = 0;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int a=0;a<actions.length;a++) {
+                if (visits[a] == 0) return a;
+                double value = scores[a] / visits[a] + EXPLORATION * Math.sqrt(Math.log(total) / visits[a]);
+                if (value > bestValue) {
+                    best = a;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Guesses everything the bot cannot know, see the class comment.
+         */
+        private void determinize(Game g) {
+            RolePool[][] pools = {{new RolePool(),new RolePool()},{new RolePool(),new RolePool()}};
+            assigner.assign(random, pools, order, guesses);
+            for (int p=0;p<guesses.length;p++) {
+                if (known[p] != null) guesses[p] = known[p];
+                else if ((allowed[p] & kindOf(guesses[p])) == 0) guesses[p] = redraw(pools, guesses[p], allowed[p]);
+            }
+            g.forget(player, guesses, pools);
+        }
+
+        /**
+         * Draws a role of an allowed kind for a player whose dealt role cannot be right.
+         * @param dealt - The role the player was dealt.
+         * @param allowed - The kinds of role the player can have.
+         */
+        private Game.Role redraw(RolePool[][] pools, Game.Role dealt, int allowed) {
+            int side = dealt.isCitizen ? 0 : 1;
+            // The dead role of the same side, then the other side's living and dead roles
+            int[][] tries = {{side, 1}, {1 - side, 0}, {1 - side, 1}};
+            for (int[] t : tries) {
+                RolePool pool = pools[t[0]][t[1]];
+                if ((allowed & kind(t[0] == 0, t[1] == 0)) != 0 && !pool.isEmpty()) return pool.draw(random);
+            }
+            // Every pool that fits has run out, so any role of an allowed kind will do
+            for (Game.Role role : Game.Role.values()) if ((allowed & kindOf(role)) != 0) return role;
+            throw new AssertionError("Something Broke!");
+        }
+
+        /**
+         * Plays random targets for everyone, except the bot's next turn which uses the target
+         * being tried.
+         * @return - 1 for a win of the bot's side, 0 for a loss, the share of living players on
+         *           the bot's side if the rollout is cut short, or NaN if the deadline passed.
+         */
+        private double rollout(Game g, int target) {
+            boolean tried = false;
+            int limit = ROLLOUT_TURNS_PER_PLAYER * g.getPlayerCount();
+            for (int t=1;t<=limit;t++) {
+                if (t % DEADLINE_CHECK_TURNS == 0 && System.nanoTime() >= deadline) return Double.NaN;
+                int p = g.getCurrentPlayer();
+                g.getLegalTargets(p, legal);
+                int selection;
+                if (p == player && !tried) {
+                    tried = true;
+                    selection = target == Game.NO_TARGET || legal.get(target) ? target : Game.NO_TARGET;
+                } else {
+                    selection = Simulator.RANDOM_TARGETS.select(g, p, legal, random);
+                }
+                g.setSelection(p, selection);
+                g.doTurn();
+                if (g.checkWin()) return g.getWinningSide().equals(citizen ? "CITIZENS" : "INFILTRATORS") ? 1 : 0;
+                g.balance();
+            }
+            int ours = g.getLivingCount(citizen);
+            return (double) ours / (ours + g.getLivingCount(!citizen));
+        }
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * @return - One bit for the kind of a role: living citizen, living infiltrator, dead citizen
+     *           or dead infiltrator.
+     */
+    private static int kindOf(Game.Role role) { return kind(role.isCitizen, role.isAlive); }
+
+    private static int kind(boolean isCitizen, boolean isAlive) {
+        return 1 << ((isAlive ? 0 : 2) + (isCitizen ? 0 : 1));
+    }
+
+    /**
+     * @return - The kinds of role a player the actor can target may have, going by the same
+     *           rules as Game.computeLegalTargets.
+     */
+    private static int targetableKinds(Game.Role actor) {
+        int living = kind(true, true) | kind(false, true);
+        switch (actor) {
+            case UNDEAD:
+            case CITIZEN:
+            case SPY:
+            case BLIND_SPY:
+            case PSYCHIC:
+            case SPECTRE:
+                return living;
+            case SILENCER:
+            case INFILTRATOR:
+                return kind(true, true);
+            case EXORCIST:
+                return ALL_KINDS & ~living;
+            case PHANTOM:
+                return kind(true, true) | kind(true, false);
+            case WRAITH:
+                return kind(false, true) | kind(false, false);
+            default:
+                return ALL_KINDS;
+        }
+    }
+
+    /**
+     * @return - The kinds of role a player the actor cannot target may have. A SPECTRE cannot
+     *           target anyone who never attacked it, so that tells it nothing.
+     */
+    private static int untargetableKinds(Game.Role actor) {
+        switch (actor) {
+            case POLTERGEIST:
+            case GHOST:
+            case APPARITION:
+            case SPECTRE:
+                return ALL_KINDS;
+            default:
+                return ALL_KINDS & ~targetableKinds(actor);
+        }
+    }
+}
@@ -0,0 +1,1114 @@
+package com.example.infiltrate.engine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The class used to represent the entire game as a whole.
+ */
+public class Game {
+    /**
+     * Enum of the various roles with two attributes: isAlive, isCitizen
+     */
+    public enum Role {
+        INFILTRATOR(Type.LIVING_INFILTRATOR,
+                "Murder someone.\nCan speak.",-1),
+        SPY(Type.LIVING_INFILTRATOR,
+                "Reveal someone's role to all infiltrators.\nCan speak.",0.7),
+        BLIND_SPY(Type.LIVING_INFILTRATOR,
+                "Reveal someone's role to all infiltrators except yourself.\nCan speak.",0.7),
+        SILENCER(Type.LIVING_INFILTRATOR,
+                "Mute someone.\nCan speak.",0.7),
+        SPECTRE(Type.DEAD_INFILTRATOR,
+                "Kill someone who targeted you in the past.\nCannot speak.",0.3),
+        WRAITH(Type.DEAD_INFILTRATOR,
+                "Scramble selections of everyone targeting some infiltrator.\nCannot speak.",0.3),
+        PHANTOM(Type.DEAD_INFILTRATOR,
+                "Randomly change the target of some citizen.\nCannot speak.",0.3),
+        CITIZEN(Type.LIVING_CITIZEN,
+                "Lynch someone.\nCan speak.",-1),
+        PSYCHIC(Type.LIVING_CITIZEN,
+                "Identify someone's role.\nCan speak.",0.7),
+        EXORCIST(Type.LIVING_CITIZEN,
+                "Change the role of someone dead.\nCan speak.",0.7),
+        UNDEAD(Type.DEAD_CITIZEN,
+                "Lynch someone.\nCan speak.",-1),
+        GHOST(Type.DEAD_CITIZEN,
+                "Reveal someone's role to a random person.\nCannot speak.",0.3),
+        POLTERGEIST(Type.DEAD_CITIZEN,
+                "Shuffle someone's turn to a random later point.\nCannot speak.",0.3),
+        APPARITION(Type.DEAD_CITIZEN,
+                "Decrease number of turns until someone's next turn.\nCannot speak.",0.3);
+
+
+        public boolean isAlive;
+        public boolean isCitizen;
+        public String description;
+        public double probability;
+        Role(Type t,String desc,double probability) {
+            this.isAlive = t.ordinal() == Type.LIVING_CITIZEN.ordinal() ||
+                    t.ordinal() == Type.LIVING_INFILTRATOR.ordinal();
+            this.isCitizen = t.ordinal() == Type.LIVING_CITIZEN.ordinal() ||
+                    t.ordinal() == Type.DEAD_CITIZEN.ordinal();
+            this.description = desc;
+            this.probability = probability;
+        }
+
+        private enum Type {
+            LIVING_INFILTRATOR, DEAD_INFILTRATOR,
+            LIVING_CITIZEN, DEAD_CITIZEN
+        }
+    }
+    public static final int NO_TARGET = -1; // player id used when no target is selected
+
+    private class Snapshot {
+        public int turn; // turn number for that player
+        public Game.Role role; // player's role
+        public int player; // player id
+        public int target; // player id of the player's target
+        public ArrayList<Message> messages; // shown after the role description
+        public boolean silenced; // whether "Can speak" is shown as "Cannot speak"
+        public boolean done; // whether or not the turn already finished
+
+        Snapshot(int player, int turn, Role role) {
+            this.player = player;
+            this.turn = turn;
+            this.role = role;
+            this.done = false;
+            this.messages = new ArrayList<>(2);
+            this.target = NO_TARGET;
+        }
+
+        Snapshot(Snapshot other) {
+            this.player = other.player;
+            this.turn = other.turn;
+            this.role = other.role;
+            this.done = other.done;
+            this.messages = new ArrayList<>(other.messages);
+            this.target = other.target;
+            this.silenced = other.silenced;
+        }
+    }
+
+    /**
+     * A finished snapshot in a linked list of every finished snapshot, latest first. Finished
+     * snapshots never change, so forks of a game share the list instead of copying it.
+     */
+    private class Finished {
+        final Snapshot snapshot;
+        final Finished previous; // the snapshot that finished before, or null
+
+        Finished(Snapshot snapshot, Finished previous) {
+            this.snapshot = snapshot;
+            this.previous = previous;
+        }
+    }
+
+    private Finished history; // The latest finished snapshot, linked to all the ones before
+    private TurnQueue<Snapshot> queue; // The pending snapshot of every player in turn order
+    private ArrayList<String> players; // Player names, indexed by player id
+    private HashMap<String,Integer> playerIds; // Player name to player id
+    private ArrayList<TurnQueue.Node<Snapshot>> pending; // Pending snapshot of each player id
+    private Role[] roles; // Role of each player id's pending snapshot
+    private int[] roleCounts; // Number of players with each role, indexed by Role ordinal
+    private int livingCitizens; // Number of players with a living citizen role
+    private int livingInfiltrators; // Number of players with a living infiltrator role
+    private BitSet alive; // Ids of players with a living role
+    private BitSet citizens; // Ids of players with a citizen role
+    private int roleVersion; // Bumped whenever a player's role changes
+    private int targetVersion; // Bumped whenever a pending target or the attackers index changes
+    private BitSet[] legalTargetCache; // Legal targets of each player id when last computed
+    private int[] legalTargetCounts; // Number of targets in each cached set
+    private int[] cachedRoleVersions; // roleVersion when each cached set was computed
+    private int[] cachedTargetVersions; // targetVersion when each cached set was computed
+    private BitSet targeting; // Ids of players whose pending snapshot has a target
+    private int[][] attackers; // Ids of the players whose finished turns targeted each player id
+    private BitSet ownedAttackers; // Ids whose attackers entries this game created or copied
+    private int[] attackerCounts; // Number of ids used in each attackers array
+    private BitSet[] attackedBy; // Same ids as attackers, only up to date for owned entries
+    private RolePool[][] rolePool; // Pools of roles when assigning players, see getRolePool
+    private RoleAssigner roleAssigner; // The restrictions the starting roles were dealt from
+    private BitSet playedThisRound; // Ids of players who took their turn in the current doRound
+
+    private String winningSide;
+    private final Random random; // Source of every random decision in the game
+
+    /**
+     * GameState constructor. Each player's id is the position of their name in playerNames.
+     * @param playerNames: an ArrayList of the players' names.
+     * @param minimums: the minimum number of each role which can exist in the game, indexed by
+     *                Role ordinal.
+     * @param maximums: the maximum number of each role which can exist in the game, indexed by
+     *                Role ordinal.
+     */
+    public Game(ArrayList<String> playerNames, int[] minimums, int[] maximums) {
+        this(playerNames, minimums, maximums, new GameRandom());
+    }
+
+    /**
+     * GameState constructor with a given random source. Using a GameRandom with a fixed seed
+     * makes the role assignment and every outcome of the game reproducible. Each player's id is
+     * the position of their name in playerNames.
+     * @param playerNames: an ArrayList of the players' names.
+     * @param minimums: the minimum number of each role which can exist in the game, indexed by
+     *                Role ordinal.
+     * @param maximums: the maximum number of each role which can exist in the game, indexed by
+     *                Role ordinal.
+     * @param random: the random source used for every random decision in the game.
+     * @throws IllegalArgumentException - If the restrictions cannot be played, see RoleAssigner.
+     */
+    public Game(ArrayList<String> playerNames, int[] minimums, int[] maximums, Random random) {
+        this(playerNames, new RoleAssigner(playerNames.size(), minimums, maximums), random);
+        // Deal every player in one pass, failing before any pool can run dry
+        int[] order = new int[players.size()];
+        Role[] dealt = new Role[players.size()];
+        roleAssigner.assign(random, rolePool, order, dealt);
+        for (int player : order) addSnapshot(new Snapshot(player, 0, dealt[player]));
+    }
+
+    /**
+     * Constructs a game with nobody in it yet, which the other constructors fill in.
+     */
+    private Game(ArrayList<String> playerNames, RoleAssigner roleAssigner, Random random) {
+        this.random = random;
+        this.roleAssigner = roleAssigner;
+        history = null;
+        queue = new TurnQueue<>();
+        players = new ArrayList<>(playerNames);
+        playerIds = new HashMap<>();
+        pending = new ArrayList<>();
+        for (int i=0;i<players.size();i++) {
+            playerIds.put(players.get(i), i);
+            pending.add(null);
+        }
+        roles = new Role[players.size()];
+        targeting = new BitSet();
+        playedThisRound = new BitSet();
+        attackers = new int[players.size()][];
+        attackerCounts = new int[players.size()];
+        attackedBy = new BitSet[players.size()];
+        legalTargetCache = new BitSet[players.size()];
+        legalTargetCounts = new int[players.size()];
+        cachedRoleVersions = new int[players.size()];
+        cachedTargetVersions = new int[players.size()];
+        roleCounts = new int[Role.values().length];
+        alive = new BitSet();
+        citizens = new BitSet();
+        rolePool = new RolePool[][]{{new RolePool(),new RolePool()},{new RolePool(),new RolePool()}};
+        ownedAttackers = new BitSet();
+    }
+
+    /**
+     * Fork constructor, see fork.
+     */
+    private Game(Game other, Random random) {
+        this.random = random;
+        history = other.history;
+        players = other.players;
+        playerIds = other.playerIds;
+        queue = other.queue.copy();
+        pending = new ArrayList<>(other.pending);
+        for (TurnQueue.Node<Snapshot> node : queue.nodes()) {
+            Snapshot ss = new Snapshot(node.get());
+            node.set(ss);
+            pending.set(ss.player, node);
+        }
+        roles = other.roles.clone();
+        roleCounts = other.roleCounts.clone();
+        livingCitizens = other.livingCitizens;
+        livingInfiltrators = other.livingInfiltrators;
+        alive = (BitSet) other.alive.clone();
+        citizens = (BitSet) other.citizens.clone();
+        roleVersion = other.roleVersion;
+        targetVersion = other.targetVersion;
+        legalTargetCache = new BitSet[players.size()];
+        legalTargetCounts = new int[players.size()];
+        cachedRoleVersions = new int[players.size()];
+        cachedTargetVersions = new int[players.size()];
+        targeting = (BitSet) other.targeting.clone();
+        // The attackers entries are shared read-only until the fork adds to one, see addAttack
+        attackers = other.attackers.clone();
+        attackerCounts = other.attackerCounts.clone();
+        attackedBy = other.attackedBy.clone();
+        ownedAttackers = new BitSet();
+        rolePool = new RolePool[2][2];
+        for (int i=0;i<2;i++) for (int j=0;j<2;j++) rolePool[i][j] = new RolePool(other.rolePool[i][j]);
+        roleAssigner = other.roleAssigner;
+        playedThisRound = (BitSet) other.playedThisRound.clone();
+        winningSide = other.winningSide;
+    }
+
+    /**
+     * Forks the game into an independent copy, for trying out selections without changing this
+     * game ("what if this target is chosen?"). Finished turns and the attackers index are shared
+     * rather than copied, so a fork costs O(players) however long the game has run, and
+     * dropping the fork is all it takes to undo whatever was done to it. Forking does not change
+     * this game: it keeps appending to its own attackers entries, past the counts the fork
+     * reads up to, and the fork copies an entry the first time it adds to it.
+     * @param random - The random source of the fork. A GameRandom.copy of this game's random
+     *               source makes the fork take the same random decisions as this game.
+     * @return - The fork.
+     */
+    public Game fork(Random random) {
+        return new Game(this, random);
+    }
+
+    public int getCurrentPlayer() { return getCurrentSnapshot().player; }
+    public String getCurrentPlayerName() { return players.get(getCurrentSnapshot().player); }
+    public Role getCurrentPlayerRole() { return getCurrentSnapshot().role; }
+    public List<Message> getCurrentPlayerMessages() { return getPlayerMessages(getCurrentPlayer()); }
+    public String getCurrentPlayerMessage() { return getPlayerMessage(getCurrentPlayer()); }
+
+    /**
+     * Gets the messages a player will be shown on their next turn.
+     * @param player - The id of the player.
+     * @return - The player's messages.
+     */
+    public List<Message> getPlayerMessages(int player) {
+        return Collections.unmodifiableList(getPlayerSnapshot(player).messages);
+    }
+
+    /**
+     * Renders the role description and messages a player will be shown on their next turn as
+     * text.
+     * @param player - The id of the player.
+     * @return - The player's messages.
+     */
+    public String getPlayerMessage(int player) {
+        Snapshot ss = getPlayerSnapshot(player);
+        StringBuilder sb = new StringBuilder();
+        if (ss.silenced) sb.append(ss.role.description.replace("Can speak","Cannot speak"));
+        else sb.append(ss.role.description);
+        for (Message m : ss.messages) m.render(sb, players);
+        return sb.toString();
+    }
+
+    /**
+     * Gets one of the messages a player will be shown on their next turn, without copying them.
+     * @param player - The id of the player.
+     * @param index - The index of the message, less than getPlayerMessageCount.
+     * @return - The message.
+     */
+    public Message getPlayerMessageAt(int player, int index) { return getPlayerSnapshot(player).messages.get(index); }
+    public int getPlayerMessageCount(int player) { return getPlayerSnapshot(player).messages.size(); }
+
+    /**
+     * @param player - The id of the player.
+     * @return - The number of turns the player has finished. Their messages start over each turn.
+     */
+    public int getPlayerTurn(int player) { return getPlayerSnapshot(player).turn; }
+    public boolean isPlayerSilenced(int player) { return getPlayerSnapshot(player).silenced; }
+    public String getWinningSide() { return this.winningSide; }
+
+    /**
+     * Sets the most recent selection of the player to be the target.
+     * @param playerName - The user who is doing the targeting.
+     * @param targetName - The user who has been targeted ("" for no target).
+     */
+    public void setSelection(String playerName, String targetName) {
+        setSelection(getPlayerId(playerName), targetName.equals("") ? NO_TARGET : getPlayerId(targetName));
+    }
+
+    /**
+     * Sets the most recent selection of the player to be the target.
+     * @param player - The id of the player who is doing the targeting.
+     * @param target - The id of the player who has been targeted, or NO_TARGET.
+     */
+    public void setSelection(int player, int target) {
+        setTarget(getPlayerSnapshot(player), target);
+    }
+
+    /**
+     * Gets the names of all players that have been playing.
+     * @return - an ArrayList of player names, indexed by player id
+     */
+    public ArrayList<String> getPlayerNames() {
+        return new ArrayList<>(players);
+    }
+
+    public int getPlayerCount() { return players.size(); }
+    public String getPlayerName(int player) { return players.get(player); }
+
+    public int getPlayerId(String name) {
+        Integer id = playerIds.get(name);
+        if (id == null) throw new IllegalArgumentException("Unknown player " + name);
+        return id;
+    }
+
+    public Role getPlayerRole(String name) {
+        return getPlayerRole(getPlayerId(name));
+    }
+
+    public Role getPlayerRole(int player) {
+        return roles[player];
+    }
+
+    /**
+     * @param citizens - Which side to count.
+     * @return - The number of players with a living role on that side.
+     */
+    int getLivingCount(boolean citizens) { return citizens ? livingCitizens : livingInfiltrators; }
+
+    /**
+     * @param player - The id of the player.
+     * @return - The target the player's next turn will use, which a PHANTOM or WRAITH may have
+     *           changed since it was selected, or NO_TARGET.
+     */
+    int getSelection(int player) { return getPlayerSnapshot(player).target; }
+
+    /**
+     * @return - The ids of every player in turn order, the current player first.
+     */
+    int[] getTurnOrder() {
+        int[] order = new int[queue.size()];
+        int i = 0;
+        for (Snapshot ss : queue) order[i++] = ss.player;
+        return order;
+    }
+
+    /**
+     * @return - The restrictions the starting roles were dealt from, which every player knows.
+     */
+    RoleAssigner getRoleAssigner() { return roleAssigner; }
+
+    /**
+     * Replaces everything a player cannot know with a guess, in a fork used by BotPlayer. The
+     * other players are put into the guessed roles and the role pools are replaced. Pending
+     * targets and the attackers index only keep the player's own targets and, if the player is
+     * a SPECTRE, the living players who attacked or are targeting them, which it sees as its
+     * legal targets.
+     * @param player - The id of the player.
+     * @param guesses - The role of each player id. The player's own entry is ignored.
+     * @param pools - The new role pools, laid out as in getRolePool.
+     */
+    void forget(int player, Role[] guesses, RolePool[][] pools) {
+        boolean spectre = roles[player] == Role.SPECTRE;
+        for (int t=0;t<attackers.length;t++) {
+            if (attackedBy[t] == null) continue;
+            BitSet kept = new BitSet();
+            int[] ids = new int[4];
+            int count = 0;
+            for (int i=0;i<attackerCounts[t];i++) {
+                int a = attackers[t][i];
+                if (a != player && !(spectre && t == player && alive.get(a))) continue;
+                kept.set(a);
+                if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+                ids[count++] = a;
+            }
+            // New entries, so the game this was forked from is never touched
+            attackedBy[t] = count == 0 ? null : kept;
+            attackers[t] = count == 0 ? null : ids;
+            attackerCounts[t] = count;
+            ownedAttackers.set(t, count > 0);
+        }
+        for (int p=targeting.nextSetBit(0);p>=0;p=targeting.nextSetBit(p+1)) {
+            if (p == player) continue;
+            Snapshot ss = getPlayerSnapshot(p);
+            if (!(spectre && ss.target == player && alive.get(p))) setTarget(ss, NO_TARGET);
+        }
+        for (int p=0;p<players.size();p++) {
+            if (p != player && roles[p] != guesses[p]) assignRole(p, guesses[p]);
+        }
+        rolePool = pools;
+        targetVersion++;
+    }
+
+    /**
+     * Puts a player into a specific role without going through the role pools. Used to set up
+     * benchmarks and simulations.
+     * @param player - The id of the player.
+     * @param role - The player's new role.
+     */
+    void assignRole(int player, Role role) {
+        setPlayerSnapshot(new Snapshot(player, getPlayerSnapshot(player).turn, role));
+    }
+
+    /**
+     * Checks if the game is over or not. Changes the value of variable winningSide.
+     * @return - True if game is over.
+     */
+    public boolean checkWin() {
+        boolean cLost = livingCitizens == 0;
+        boolean iLost = livingInfiltrators == 0;
+        winningSide = cLost ? "INFILTRATORS" : iLost ? "CITIZENS" : "NOBODY";
+        return cLost != iLost;
+    }
+
+    /**
+     * Converts a non-ordinary citizen to an ordinary citizen if no ordinary citizens alive or a
+     * non-ordinary infiltrator to an ordinary infiltrator if no ordinary infiltrators alive.
+     * The converted player is picked uniformly at random; the players are only scanned when a
+     * conversion is needed.
+     */
+    public void balance() {
+        // Both decisions are made before either conversion, using the counters
+        int nonOrdinaryCitizens = livingCitizens - roleCounts[Role.CITIZEN.ordinal()];
+        int nonOrdinaryInfiltrators = livingInfiltrators - roleCounts[Role.INFILTRATOR.ordinal()];
+        boolean convertCitizen = roleCounts[Role.CITIZEN.ordinal()] == 0 && nonOrdinaryCitizens > 0;
+        boolean convertInfiltrator = roleCounts[Role.INFILTRATOR.ordinal()] == 0 && nonOrdinaryInfiltrators > 0;
+        if (convertCitizen) {
+            Snapshot ss = getPlayerSnapshot(pickLiving(true, random.nextInt(nonOrdinaryCitizens)));
+            // Calculate the new snapshot
+            Snapshot nss = new Snapshot(ss.player,ss.turn,Role.CITIZEN);
+            nss.messages.add(Message.REPLACED_CITIZEN);
+            nss.messages.addAll(ss.messages);
+            nss.silenced = ss.silenced;
+            setPlayerSnapshot(nss); // assign new snapshot (turn order is unchanged)
+
+        }
+        if (convertInfiltrator) {
+            Snapshot ss = getPlayerSnapshot(pickLiving(false, random.nextInt(nonOrdinaryInfiltrators)));
+            // Calculate the new snapshot
+            Snapshot nss = new Snapshot(ss.player,ss.turn,Role.INFILTRATOR);
+            nss.messages.add(Message.REPLACED_INFILTRATOR);
+            nss.messages.addAll(ss.messages);
+            nss.silenced = ss.silenced;
+            setPlayerSnapshot(nss); // assign new snapshot (turn order is unchanged)
+        }
+    }
+
+    /**
+     * Plays a round in one call: every player takes one turn in turn order, with the target
+     * selected for them in selections. All the selections are set before the first turn
+     * resolves, so roles which act on pending selections (WRAITH, SPECTRE) see the whole round's
+     * selections. A selection which is not a player id, or which a death or conversion earlier in
+     * the round made illegal, is played as no target and replaced by NO_TARGET in selections. A
+     * player pushed behind someone who already played this round plays in the next round
+     * instead. The round stops as soon as a side has won (checkWin is true), and balance runs
+     * after each turn since it only does work when a conversion is needed.
+     * @param selections - The selected target of each player id, or NO_TARGET.
+     * @param successes - If not null, filled with the ids of the players whose action succeeded.
+     * @return - The number of turns played.
+     */
+    public int doRound(int[] selections, BitSet successes) {
+        if (selections.length != players.size()) {
+            throw new IllegalArgumentException("Need a selection for every player");
+        }
+        playedThisRound.clear();
+        if (successes != null) successes.clear();
+        // Every selection is in place before the first turn resolves
+        for (int p=0;p<selections.length;p++) {
+            int target = selections[p] >= 0 && selections[p] < selections.length ? selections[p] : NO_TARGET;
+            selections[p] = target;
+            getPlayerSnapshot(p).target = target;
+            targeting.set(p, target != NO_TARGET);
+        }
+        targetVersion++;
+
+        int turns = 0;
+        while (!playedThisRound.get(getCurrentPlayer())) {
+            Snapshot ss = getCurrentSnapshot();
+            playedThisRound.set(ss.player);
+            if (!isLegalTarget(ss.player, ss.target)) {
+                setTarget(ss, NO_TARGET);
+                selections[ss.player] = NO_TARGET;
+            }
+            if (doTurn() && successes != null) successes.set(ss.player);
+            turns++;
+            if (checkWin()) break;
+            balance();
+        }
+        return turns;
+    }
+
+    /**
+     * @param player - The id of a player.
+     * @return - True if the player took their turn in the last doRound.
+     */
+    public boolean hasPlayedThisRound(int player) { return playedThisRound.get(player); }
+
+    // SERIALIZATION //
+
+    /**
+     * Writes everything the rest of the game depends on: the random source, every pending
+     * snapshot in turn order, the attackers index, the role pools and the winner. Finished turns
+     * are not written since nothing reads them back, and the caches are rebuilt on demand. Used
+     * by GameLog.saveState so a long game can be restored without replaying every turn.
+     * @param out - Stream to write to.
+     * @throws IOException - If the stream cannot be written.
+     * @throws IllegalStateException - If the game's random source is not a GameRandom, whose
+     *                               state can be saved.
+     */
+    void writeState(DataOutputStream out) throws IOException {
+        if (!(random instanceof GameRandom)) throw new IllegalStateException("Random source cannot be saved");
+        out.writeLong(((GameRandom) random).getState());
+        out.writeInt(queue.size());
+        for (Snapshot ss : queue) {
+            out.writeInt(ss.player);
+            out.writeInt(ss.turn);
+            out.writeByte(ss.role.ordinal());
+            out.writeInt(ss.target);
+            out.writeBoolean(ss.silenced);
+            out.writeInt(ss.messages.size());
+            for (Message m : ss.messages) {
+                out.writeByte(m.type.ordinal());
+                out.writeInt(m.target);
+                out.writeByte(m.role == null ? -1 : m.role.ordinal());
+            }
+        }
+        for (int t=0;t<players.size();t++) {
+            out.writeInt(attackerCounts[t]);
+            for (int i=0;i<attackerCounts[t];i++) out.writeInt(attackers[t][i]);
+        }
+        for (int i=0;i<2;i++) for (int j=0;j<2;j++) {
+            RolePool pool = rolePool[i][j];
+            for (Role role : Role.values()) {
+                out.writeInt(pool.getMinimumCount(role));
+                out.writeInt(pool.getRemainingCount(role));
+            }
+            out.writeInt(pool.getReturnedCount());
+            for (int r=0;r<pool.getReturnedCount();r++) out.writeByte(pool.getReturned(r).ordinal());
+        }
+        for (int p=0;p<players.size();p++) out.writeBoolean(playedThisRound.get(p));
+        out.writeBoolean(winningSide != null);
+        if (winningSide != null) out.writeUTF(winningSide);
+    }
+
+    /**
+     * Reads a game written by writeState. The game then takes exactly the same random decisions
+     * as the game that was written.
+     * @param playerNames - The players' names, as given to the written game.
+     * @param minimums - The minimums given to the written game.
+     * @param maximums - The maximums given to the written game.
+     * @param in - Stream to read from.
+     * @return - The game.
+     * @throws IOException - If the stream cannot be read or does not hold a game of these players.
+     */
+    static Game readState(ArrayList<String> playerNames, int[] minimums, int[] maximums,
+                          DataInputStream in) throws IOException {
+        Role[] roleValues = Role.values();
+        Message.Type[] typeValues = Message.Type.values();
+        try {
+            Game game = new Game(playerNames, new RoleAssigner(playerNames.size(), minimums, maximums),
+                    new GameRandom(in.readLong()));
+            int n = game.players.size();
+            if (in.readInt() != n) throw new IOException("Saved game has other players");
+            for (int i=0;i<n;i++) {
+                int player = in.readInt();
+                if (game.pending.get(player) != null) throw new IOException("Corrupt saved game");
+                Snapshot ss = game.new Snapshot(player, in.readInt(), roleValues[in.readByte()]);
+                ss.target = in.readInt();
+                if (ss.target < NO_TARGET || ss.target >= n) throw new IOException("Corrupt saved game");
+                ss.silenced = in.readBoolean();
+                for (int m=in.readInt();m>0;m--) {
+                    Message.Type type = typeValues[in.readByte()];
+                    int target = in.readInt();
+                    int role = in.readByte();
+                    ss.messages.add(Message.of(type, target, role < 0 ? null : roleValues[role]));
+                }
+                game.addSnapshot(ss);
+            }
+            for (int t=0;t<n;t++) {
+                for (int i=in.readInt();i>0;i--) {
+                    int attacker = in.readInt();
+                    if (attacker < 0 || attacker >= n) throw new IOException("Corrupt saved game");
+                    game.addAttack(attacker, t);
+                }
+            }
+            for (int i=0;i<2;i++) for (int j=0;j<2;j++) {
+                RolePool pool = game.rolePool[i][j];
+                for (Role role : roleValues) {
+                    pool.addMinimum(role, in.readInt());
+                    pool.addRemaining(role, in.readInt());
+                }
+                for (int r=in.readInt();r>0;r--) pool.add(roleValues[in.readByte()]);
+            }
+            for (int p=0;p<n;p++) game.playedThisRound.set(p, in.readBoolean());
+            if (in.readBoolean()) game.winningSide = in.readUTF();
+            return game;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt saved game", e);
+        }
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * Gets the snapshot of the current turn that is happening.
+     * @return - The snapshot of the current turn.
+     */
+    private Snapshot getCurrentSnapshot() {
+        return queue.first();
+    }
+
+    /**
+     * Returns the most recent (pending) snapshot of a player.
+     * @param player - id of player.
+     * @return - the snapshot.
+     */
+    private Snapshot getPlayerSnapshot(int player) {
+        return getPlayerNode(player).get();
+    }
+
+    /**
+     * Replaces the pending snapshot of a player, keeping its place in the turn order.
+     * @param ss - The new snapshot.
+     */
+    private void setPlayerSnapshot(Snapshot ss) {
+        getPlayerNode(ss.player).set(ss);
+        updateMembership(ss.player, ss.role);
+        targeting.set(ss.player, ss.target != NO_TARGET);
+        targetVersion++;
+    }
+
+    private TurnQueue.Node<Snapshot> getPlayerNode(int player) {
+        TurnQueue.Node<Snapshot> node = pending.get(player);
+        if (node == null) throw new AssertionError("Something Broke!");
+        return node;
+    }
+
+    /**
+     * Adds a snapshot onto the end of the turn order as the pending snapshot of its player.
+     * @param ss - The snapshot to add.
+     */
+    private void addSnapshot(Snapshot ss) {
+        pending.set(ss.player, queue.addLast(ss));
+        updateMembership(ss.player, ss.role);
+        targeting.set(ss.player, ss.target != NO_TARGET);
+        targetVersion++;
+    }
+
+    /**
+     * Changes the target of a pending snapshot.
+     * @param ss - The pending snapshot.
+     * @param target - The id of the new target, or NO_TARGET.
+     */
+    private void setTarget(Snapshot ss, int target) {
+        ss.target = target;
+        targeting.set(ss.player, target != NO_TARGET);
+        targetVersion++;
+    }
+
+    /**
+     * Adds a finished turn to the attackers index used by SPECTRE.
+     * @param attacker - The id of the player whose turn finished.
+     * @param target - The id of the turn's target.
+     */
+    private void addAttack(int attacker, int target) {
+        if (attackedBy[target] == null) {
+            attackedBy[target] = new BitSet();
+            attackers[target] = new int[4];
+            ownedAttackers.set(target);
+        } else if (!ownedAttackers.get(target)) {
+            // Copy on write, only up to this game's count since the owner may have added more
+            int count = attackerCounts[target];
+            attackers[target] = Arrays.copyOf(attackers[target], Math.max(4, count * 2));
+            attackedBy[target] = new BitSet();
+            for (int i=0;i<count;i++) attackedBy[target].set(attackers[target][i]);
+            ownedAttackers.set(target);
+        }
+        if (attackedBy[target].get(attacker)) return;
+        attackedBy[target].set(attacker);
+        if (attackerCounts[target] == attackers[target].length) {
+            attackers[target] = Arrays.copyOf(attackers[target], attackerCounts[target] * 2);
+        }
+        attackers[target][attackerCounts[target]++] = attacker;
+        targetVersion++;
+    }
+
+    /**
+     * @param attacker - The id of a player.
+     * @param target - The id of a player.
+     * @return - True if a finished turn of attacker targeted target.
+     */
+    private boolean hasAttacked(int attacker, int target) {
+        if (attackedBy[target] == null) return false;
+        if (ownedAttackers.get(target)) return attackedBy[target].get(attacker);
+        // A shared entry's set may hold attacks the owner added after the fork
+        for (int i=0;i<attackerCounts[target];i++) if (attackers[target][i] == attacker) return true;
+        return false;
+    }
+
+    /**
+     * Keeps the alive and citizens sets and the role counters in line with a player's role. Must
+     * be called whenever the role of a player's pending snapshot changes.
+     * @param id - The player's id.
+     * @param role - The player's new role.
+     */
+    private void updateMembership(int id, Role role) {
+        Role prevRole = roles[id];
+        if (prevRole == role) return;
+        roleVersion++;
+        if (prevRole != null) {
+            roleCounts[prevRole.ordinal()]--;
+            if (prevRole.isAlive&&prevRole.isCitizen) livingCitizens--;
+            if (prevRole.isAlive&&!prevRole.isCitizen) livingInfiltrators--;
+        }
+        roles[id] = role;
+        roleCounts[role.ordinal()]++;
+        if (role.isAlive&&role.isCitizen) livingCitizens++;
+        if (role.isAlive&&!role.isCitizen) livingInfiltrators++;
+        alive.set(id, role.isAlive);
+        citizens.set(id, role.isCitizen);
+    }
+
+    /**
+     * Finds a living player of one side who does not have the side's ordinary role.
+     * @param isCitizen - The side.
+     * @param index - Which of those players to return, in player id order.
+     * @return - The player's id.
+     */
+    private int pickLiving(boolean isCitizen, int index) {
+        Role ordinary = isCitizen ? Role.CITIZEN : Role.INFILTRATOR;
+        for (int p=alive.nextSetBit(0);p>=0;p=alive.nextSetBit(p+1)) {
+            if (roles[p].isCitizen == isCitizen && roles[p] != ordinary && index-- == 0) return p;
+        }
+        throw new AssertionError("Something Broke!");
+    }
+
+    /**
+     * Generates a probability based boolean.
+     * @param probability - Probability of true.
+     * @return - A boolean.
+     */
+    private boolean getRandomBoolean(double probability){
+        return random.nextDouble() < probability;
+    }
+
+    private int getRandom(int min,int max) {
+        return min + (int)(random.nextDouble() * (max - min));
+    }
+
+    private void killPlayer(int player) {
+        Snapshot ss = getPlayerSnapshot(player);
+        // Calculate the new snapshot
+        Snapshot nss = new Snapshot(ss.player,ss.turn,drawRole(false,ss.role.isCitizen));
+        nss.messages.add(Message.DIED);
+        nss.messages.addAll(ss.messages);
+        nss.silenced = ss.silenced;
+        setPlayerSnapshot(nss); // assign new snapshot (turn order is unchanged)
+    }
+
+    /**
+     * Picks one of the players a player can legally target, never picking no target unless
+     * there are no others.
+     * @param player - The id of a player.
+     * @return - The id of the picked target, or NO_TARGET if there are none.
+     */
+    private int getRandomLegalTarget(int player) {
+        BitSet targets = getCachedLegalTargets(player);
+        int i = targets.nextSetBit(0);
+        for (int skip=getRandom(0,legalTargetCounts[player]);skip>0;skip--) i = targets.nextSetBit(i+1);
+        return i < 0 ? NO_TARGET : i;
+    }
+
+    private RolePool getRolePool(boolean isAlive, boolean isCitizen) {
+        return rolePool[isCitizen ? 0 : 1][isAlive ? 0 : 1];
+    }
+
+    private Role drawRole(boolean isAlive, boolean isCitizen) {
+        return getRolePool(isAlive,isCitizen).draw(random);
+    }
+
+
+
+    // ROLE-DEPENDENT METHODS //
+
+    /**
+     * Gets the possible players that a given player can legally target.
+     * @param playerName - The name of a player.
+     * @return - The other players which the given player can legally target.
+     */
+    public ArrayList<String> getLegalTargets(String playerName) {
+        int player = getPlayerId(playerName);
+        BitSet targets = getCachedLegalTargets(player);
+        ArrayList<String> legalTargets = new ArrayList<String>(legalTargetCounts[player] + 1);
+        for (int i=targets.nextSetBit(0);i>=0;i=targets.nextSetBit(i+1)) legalTargets.add(players.get(i));
+        legalTargets.add("");
+        return legalTargets;
+    }
+
+    /**
+     * Gets the possible players that a given player can legally target as a set of player ids.
+     * Selecting no target is always legal and is not included.
+     * @param player - The id of a player.
+     * @param out - Set to fill, which is cleared first so it can be reused between calls.
+     * @return - out.
+     */
+    public BitSet getLegalTargets(int player, BitSet out) {
+        out.clear();
+        out.or(getCachedLegalTargets(player));
+        return out;
+    }
+
+    /**
+     * Gets the legal targets of a player, only computing them again if a role has changed since
+     * they were cached (or, for SPECTRE, a target has changed).
+     * @param player - The id of a player.
+     * @return - The cached set, which must not be changed.
+     */
+    private BitSet getCachedLegalTargets(int player) {
+        BitSet targets = legalTargetCache[player];
+        if (targets != null && cachedRoleVersions[player] == roleVersion
+                && (roles[player] != Role.SPECTRE || cachedTargetVersions[player] == targetVersion)) {
+            return targets;
+        }
+        if (targets == null) targets = legalTargetCache[player] = new BitSet(players.size());
+        computeLegalTargets(player, targets);
+        legalTargetCounts[player] = targets.cardinality();
+        cachedRoleVersions[player] = roleVersion;
+        cachedTargetVersions[player] = targetVersion;
+        return targets;
+    }
+
+    private void computeLegalTargets(int player, BitSet out) {
+        out.clear();
+        int n = players.size();
+        switch (getPlayerRole(player))  {
+            case POLTERGEIST:
+            case GHOST:
+            case APPARITION:
+                out.set(0, n);
+                break;
+            case UNDEAD:
+            case CITIZEN:
+            case SPY:
+            case BLIND_SPY:
+            case PSYCHIC:
+                out.or(alive);
+                break;
+            case SILENCER:
+            case INFILTRATOR:
+                out.or(alive);
+                out.and(citizens);
+                break;
+            case SPECTRE:
+                // Living players whose finished or pending turns targeted the player
+                for (int i=0;i<attackerCounts[player];i++) {
+                    if (alive.get(attackers[player][i])) out.set(attackers[player][i]);
+                }
+                for (int p=targeting.nextSetBit(0);p>=0;p=targeting.nextSetBit(p+1)) {
+                    if (getPlayerSnapshot(p).target == player && alive.get(p)) out.set(p);
+                }
+                break;
+            case EXORCIST:
+                out.set(0, n);
+                out.andNot(alive);
+                break;
+            case PHANTOM:
+                out.or(citizens);
+                break;
+            case WRAITH:
+                out.set(0, n);
+                out.andNot(citizens);
+                break;
+            default:
+                // if it gets to here, code for a role is missing
+        }
+    }
+
+    /**
+     * Checks one target against the same rules as computeLegalTargets without building the set.
+     * @param player - The id of a player.
+     * @param target - The id of the target, or NO_TARGET (always legal).
+     * @return - True if the player can select the target.
+     */
+    private boolean isLegalTarget(int player, int target) {
+        if (target == NO_TARGET) return true;
+        switch (getPlayerRole(player))  {
+            case POLTERGEIST:
+            case GHOST:
+            case APPARITION:
+                return true;
+            case UNDEAD:
+            case CITIZEN:
+            case SPY:
+            case BLIND_SPY:
+            case PSYCHIC:
+                return alive.get(target);
+            case SILENCER:
+            case INFILTRATOR:
+                return alive.get(target) && citizens.get(target);
+            case SPECTRE:
+                return alive.get(target) && (hasAttacked(target, player)
+                        || getPlayerSnapshot(target).target == player);
+            case EXORCIST:
+                return !alive.get(target);
+            case PHANTOM:
+                return citizens.get(target);
+            case WRAITH:
+                return !citizens.get(target);
+            default:
+                // if it gets to here, code for a role is missing
+                return false;
+        }
+    }
+
+    /**
+     * Changes any internal variables and makes any changes as a result of the
+     * selection of the current player. Sets up the fields to be ready for the
+     * next player's turn.
+     * @return - True if the player selected a target and their action succeeded.
+     */
+    public boolean doTurn() {
+
+        Snapshot ss = getCurrentSnapshot();
+        Message result = Message.NO_TARGET; // added to the current player's messages
+        Message reveal = null; // role revealed to the current player, added before the result
+        boolean success = false;
+
+        if (ss.target != NO_TARGET) {
+            switch (ss.role) {
+                case UNDEAD:
+                case CITIZEN:
+                    // Calculate number of citizens
+                    int c = roleCounts[Role.CITIZEN.ordinal()];
+
+                    if (getRandomBoolean(1.0/(c+1))) {
+                        killPlayer(ss.target);
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case INFILTRATOR: {
+                    // Calculate number of infiltrators
+                    int i = roleCounts[Role.INFILTRATOR.ordinal()];
+                    if (getRandomBoolean(1.0/(i+1))) {
+                        killPlayer(ss.target);
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;}
+                case SILENCER:
+                    if (getRandomBoolean(Role.SILENCER.probability)) {
+                        getPlayerSnapshot(ss.target).silenced = true;
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case PSYCHIC:
+                    if (getRandomBoolean(Role.PSYCHIC.probability)) {
+                        reveal = Message.reveal(ss.target, getPlayerRole(ss.target));
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case SPY:
+                    if (getRandomBoolean(Role.SPY.probability)) {
+                        reveal = Message.reveal(ss.target, getPlayerRole(ss.target));
+                        for (int p=citizens.nextClearBit(0);p<players.size();p=citizens.nextClearBit(p+1)) {
+                            if (p != ss.player) getPlayerSnapshot(p).messages.add(reveal);
+                        }
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case BLIND_SPY:
+                    if (getRandomBoolean(Role.BLIND_SPY.probability)) {
+                        Message blindReveal = Message.reveal(ss.target, getPlayerRole(ss.target));
+                        for (int p=citizens.nextClearBit(0);p<players.size();p=citizens.nextClearBit(p+1)) {
+                            if (p != ss.player) getPlayerSnapshot(p).messages.add(blindReveal);
+                        }
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case POLTERGEIST:
+                    if (getRandomBoolean(Role.POLTERGEIST.probability)) {
+                        TurnQueue.Node<Snapshot> target = getPlayerNode(ss.target);
+                        int ti = queue.indexOf(target);
+                        queue.move(target, getRandom(ti + 1, queue.size() - 1) - 1);
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case GHOST:
+                    if (getRandomBoolean(Role.GHOST.probability)) {
+                        getPlayerSnapshot(getRandom(0, players.size() - 1))
+                                .messages.add(Message.reveal(ss.target, getPlayerRole(ss.target)));
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case APPARITION:
+                    if (getRandomBoolean(Role.APPARITION.probability)) {
+                        TurnQueue.Node<Snapshot> target = getPlayerNode(ss.target);
+                        int ti = queue.indexOf(target);
+                        int ci = queue.indexOf(getPlayerNode(ss.player));
+                        int i = getRandom(0,ti-ci);
+                        queue.move(target,i+ci);
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case SPECTRE:
+                    if (getRandomBoolean(Role.SPECTRE.probability)) {
+                        killPlayer(ss.target);
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+
+                case EXORCIST:
+                    if (getRandomBoolean(Role.EXORCIST.probability)) {
+                        Snapshot tss = getPlayerSnapshot(ss.target);
+                        Role prevRole = tss.role;
+                        tss.role = drawRole(false,tss.role.isCitizen);
+                        updateMembership(tss.player, tss.role);
+                        getRolePool(false,tss.role.isCitizen).add(prevRole);
+
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+                case PHANTOM:
+                    if (getRandomBoolean(Role.PHANTOM.probability)) {
+                        Snapshot tss = getPlayerSnapshot(ss.target);
+                        setTarget(tss, getRandomLegalTarget(tss.player));
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+
+                case WRAITH:
+                    if (getRandomBoolean(Role.WRAITH.probability)) {
+                        for (int p=targeting.nextSetBit(0);p>=0;p=targeting.nextSetBit(p+1)) {
+                            Snapshot pss = getPlayerSnapshot(p);
+                            if (pss.target == ss.target) {
+                                setTarget(pss, getRandomLegalTarget(p));
+                            }
+                        }
+                        result = Message.success(ss.target);
+                        success = true;
+                    } else { result = Message.failure(ss.target); }
+                    break;
+
+                default:
+                    // if it gets to here, code for a role is missing
+                    break;
+
+            }
+        }
+
+        // The player's snapshot is replaced if they killed themselves, so look it up again
+        ss = getPlayerSnapshot(ss.player);
+        ss.done = true; // Registers that the turn is over
+        queue.remove(getPlayerNode(ss.player));
+        history = new Finished(ss, history);
+        if (ss.target != NO_TARGET) addAttack(ss.player, ss.target);
+        // Add the new empty snapshot for this player's next turn
+        Snapshot nextss = new Snapshot(ss.player,ss.turn+1,ss.role);
+        if (reveal != null) nextss.messages.add(reveal);
+        nextss.messages.add(result);
+        addSnapshot(nextss);
+        return success;
+    }
+
+
+
+
+
+
+
+
+}
+
+
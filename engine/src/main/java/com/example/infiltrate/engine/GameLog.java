@@ -0,0 +1,393 @@
+package com.example.infiltrate.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Append-only binary record of a game. The header holds everything needed to construct the
+ * game again (the seed, the player names and the role restrictions) and every turn is stored as
+ * a small event of integer ids, so a game can be replayed to the exact state of any turn.
+ *
+ * File format (integers are unsigned varints unless stated otherwise):
+ * header: "INFL" (4 bytes), version (1 byte), seed (8 bytes big-endian), player count,
+ *         each player name as a length followed by UTF-8 bytes, role count,
+ *         then the minimum and maximum of each role in Role order.
+ * event:  player id, one byte of (role ordinal << 2 | game over << 1 | success),
+ *         target id + 1 (0 for no target).
+ * Player ids are the positions of the names in the header.
+ *
+ * A log only replays with the engine version that recorded it, since the game's random draws
+ * are not kept the same between versions. VERSION is bumped whenever they change and older logs
+ * are rejected when read:
+ * 1. The first format.
+ * 2. The Role order is shuffled instead of the restriction list, balance picks the converted
+ *    player using the census counters, and RoleAssigner deals every role in one pass.
+ *
+ * A long game can also be restored from a saved state (see saveState) followed by only the turns
+ * recorded after it, instead of replaying it from the start.
+ */
+public class GameLog {
+    private static final int MAGIC = 0x494E464C; // "INFL"
+    private static final int VERSION = 2; // see the class comment
+    private static final int STATE_MAGIC = 0x494E4653; // "INFS"
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final long seed;
+    private final ArrayList<String> playerNames; // player names in id order
+    private final HashMap<String,Integer> playerIds;
+    private final int[] minimums; // indexed by Role ordinal
+    private final int[] maximums; // indexed by Role ordinal
+
+    private byte[] bytes = new byte[256]; // header followed by the events
+    private int size; // number of bytes used
+    private int eventsStart; // index of the first event
+    private int turns; // number of events
+    private int flushed; // number of bytes already written by write or flush
+
+    /**
+     * Starts the log of a new game.
+     * @param seed - Seed of the game's random source.
+     * @param playerNames - The players' names.
+     * @param minimums - Minimum number of each role, indexed by Role ordinal.
+     * @param maximums - Maximum number of each role, indexed by Role ordinal.
+     */
+    public GameLog(long seed, ArrayList<String> playerNames, int[] minimums, int[] maximums) {
+        this.seed = seed;
+        this.playerNames = new ArrayList<>(playerNames);
+        this.minimums = minimums.clone();
+        this.maximums = maximums.clone();
+        this.playerIds = new HashMap<>();
+        for (int i=0;i<this.playerNames.size();i++) playerIds.put(this.playerNames.get(i), i);
+
+        writeInt(MAGIC);
+        writeByte(VERSION);
+        writeInt((int)(seed >>> 32));
+        writeInt((int)seed);
+        writeVarint(this.playerNames.size());
+        for (String name : this.playerNames) {
+            byte[] b = name.getBytes(UTF_8);
+            writeVarint(b.length);
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+        writeVarint(Game.Role.values().length);
+        for (int i=0;i<Game.Role.values().length;i++) {
+            writeVarint(this.minimums[i]);
+            writeVarint(this.maximums[i]);
+        }
+        eventsStart = size;
+    }
+
+    /**
+     * Constructs the game described by the header, in the state before the first turn.
+     * @return - A new game.
+     */
+    public Game createGame() {
+        return new Game(playerNames, minimums, maximums, new GameRandom(seed));
+    }
+
+    /**
+     * Appends a finished turn to the log.
+     * @param playerName - The player who took the turn.
+     * @param role - The player's role during the turn.
+     * @param target - The selected target ("" for no target).
+     * @param success - Whether the action succeeded (returned by doTurn).
+     * @param gameOver - Whether the game was won after the turn (returned by checkWin).
+     */
+    public void recordTurn(String playerName, Game.Role role, String target, boolean success,
+                           boolean gameOver) {
+        recordTurn(getPlayerId(playerName), role, target.equals("") ? Game.NO_TARGET : getPlayerId(target),
+                success, gameOver);
+    }
+
+    /**
+     * Appends a finished turn to the log. Player ids of the game created by createGame are the
+     * same as the ids of the log.
+     * @param player - The id of the player who took the turn.
+     * @param role - The player's role during the turn.
+     * @param target - The id of the selected target, or Game.NO_TARGET.
+     * @param success - Whether the action succeeded (returned by doTurn).
+     * @param gameOver - Whether the game was won after the turn (returned by checkWin).
+     */
+    public void recordTurn(int player, Game.Role role, int target, boolean success,
+                           boolean gameOver) {
+        writeVarint(player);
+        writeByte(role.ordinal() << 2 | (gameOver ? 2 : 0) | (success ? 1 : 0));
+        writeVarint(target + 1);
+        turns++;
+    }
+
+    /**
+     * Replays the log to rebuild the game as it was after a number of turns. Each turn is played
+     * the same way as GameActivity.nextTurn: setSelection, doTurn, checkWin then, unless a side
+     * has won, balance.
+     * @param turns - Number of turns to replay (at most getTurnCount()).
+     * @return - The rebuilt game.
+     */
+    public Game replay(int turns) {
+        return replay(createGame(), 0, turns);
+    }
+
+    /**
+     * Saves the state of a game played from this log, so restore can rebuild it without
+     * replaying every turn. The game must be in the state replay(getTurnCount()) would rebuild.
+     * @param game - The game, created by createGame or restore.
+     * @return - The saved state.
+     */
+    public byte[] saveState(Game game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(STATE_MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeInt(turns);
+            game.writeState(out);
+        } catch (IOException e) {
+            throw new AssertionError("Something Broke!", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuilds the game as it was after every turn of the log, starting from a state saved by
+     * saveState and only replaying the turns recorded since.
+     * @param state - A state saved by saveState, from this log or a copy of it.
+     * @return - The rebuilt game.
+     * @throws IOException - If the state is not valid or was saved from another game, or after
+     *                     more turns than the log has.
+     */
+    public Game restore(byte[] state) throws IOException {
+        Game game;
+        int stateTurns;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            if (in.readInt() != STATE_MAGIC || in.readByte() != VERSION) throw new IOException("Not a saved game");
+            stateTurns = in.readLong() == seed ? in.readInt() : -1;
+            if (stateTurns < 0 || stateTurns > turns) throw new IOException("Saved game is not of this log");
+            game = Game.readState(playerNames, minimums, maximums, in);
+        }
+        return replay(game, stateTurns, turns);
+    }
+
+    /**
+     * Plays turns of the log on a game.
+     * @param game - The game as it was after from turns.
+     * @param from - Number of turns already played on the game.
+     * @param turns - Number of turns the game should have played when done.
+     * @return - game.
+     */
+    private Game replay(Game game, int from, int turns) {
+        Cursor cursor = new Cursor();
+        for (int i=0;i<from;i++) cursor.next(); // the game has already played these
+        for (int i=from;i<turns&&cursor.next();i++) {
+            if (game.getCurrentPlayer() != cursor.player
+                    || game.getCurrentPlayerRole() != cursor.role) {
+                throw new IllegalStateException("Log does not match the game at turn " + i);
+            }
+            game.setSelection(cursor.player, cursor.target);
+            if (game.doTurn() != cursor.success) {
+                throw new IllegalStateException("Log does not match the game at turn " + i);
+            }
+            if (!game.checkWin()) game.balance();
+        }
+        return game;
+    }
+
+    public long getSeed() { return seed; }
+    public int getTurnCount() { return turns; }
+    public String getPlayerName(int id) { return playerNames.get(id); }
+    public int getPlayerCount() { return playerNames.size(); }
+
+    public int getPlayerId(String name) {
+        Integer id = playerIds.get(name);
+        if (id == null) throw new IllegalArgumentException("Unknown player " + name);
+        return id;
+    }
+
+    /**
+     * Reads through the events of the log without allocating.
+     */
+    public class Cursor {
+        public int player; // id of the player who took the turn
+        public Game.Role role; // the player's role during the turn
+        public int target; // id of the target or Game.NO_TARGET
+        public boolean success;
+        public boolean gameOver;
+        private int position = eventsStart;
+
+        /**
+         * Moves to the next event.
+         * @return - False if there are no more events.
+         */
+        public boolean next() {
+            if (position >= size) return false;
+            player = readVarint();
+            int b = bytes[position++] & 0xFF;
+            role = Game.Role.values()[b >>> 2];
+            gameOver = (b & 2) != 0;
+            success = (b & 1) != 0;
+            target = readVarint() - 1;
+            return true;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    // SERIALIZATION //
+
+    /**
+     * Writes the whole log.
+     * @param out - Stream to write to.
+     * @throws IOException - If the stream cannot be written.
+     */
+    public void write(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+        flushed = size;
+    }
+
+    /**
+     * Writes only what was recorded since the last write or flush, so a file holding the log can
+     * be kept up to date by appending after every turn.
+     * @param out - Stream to append to.
+     * @throws IOException - If the stream cannot be written.
+     */
+    public void flush(OutputStream out) throws IOException {
+        out.write(bytes, flushed, size - flushed);
+        flushed = size;
+    }
+
+    /**
+     * @return - The number of bytes of the whole log.
+     */
+    public int getByteCount() { return size; }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * Reads a log written by write.
+     * @param in - Stream to read from.
+     * @return - The log.
+     * @throws IOException - If the stream cannot be read or is not a valid log.
+     */
+    public static GameLog read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+        return fromByteArray(out.toByteArray());
+    }
+
+    /**
+     * Parses a log from the bytes returned by toByteArray.
+     * @param b - The bytes of the log.
+     * @return - The log.
+     * @throws IOException - If the bytes are not a valid log.
+     */
+    public static GameLog fromByteArray(byte[] b) throws IOException {
+        try {
+            int[] position = {0};
+            if (readInt(b, position) != MAGIC) throw new IOException("Not a game log");
+            int version = b[position[0]++];
+            if (version != VERSION) {
+                throw new IOException("Game log version " + version + " cannot be replayed by version "
+                        + VERSION + ", which deals and plays the game differently");
+            }
+            long seed = ((long)readInt(b, position) << 32) | (readInt(b, position) & 0xFFFFFFFFL);
+            int playerCount = readVarint(b, position);
+            ArrayList<String> playerNames = new ArrayList<>();
+            for (int i=0;i<playerCount;i++) {
+                int length = readVarint(b, position);
+                playerNames.add(new String(b, position[0], length, UTF_8));
+                position[0] += length;
+            }
+            int roleCount = readVarint(b, position);
+            if (roleCount != Game.Role.values().length) throw new IOException("Unknown roles");
+            int[] minimums = new int[roleCount];
+            int[] maximums = new int[roleCount];
+            for (int i=0;i<roleCount;i++) {
+                minimums[i] = readVarint(b, position);
+                maximums[i] = readVarint(b, position);
+            }
+
+            GameLog log = new GameLog(seed, playerNames, minimums, maximums);
+            if (log.eventsStart != position[0]) throw new IOException("Corrupt header");
+            log.bytes = b;
+            log.size = b.length;
+            // Count the events, which also checks that none are cut off
+            Cursor cursor = log.new Cursor();
+            while (cursor.next()) log.turns++;
+            return log;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated game log", e);
+        }
+    }
+
+    // HELPER METHODS //
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        bytes[size++] = (byte)b;
+    }
+
+    private void writeInt(int v) {
+        ensureCapacity(4);
+        bytes[size++] = (byte)(v >>> 24);
+        bytes[size++] = (byte)(v >>> 16);
+        bytes[size++] = (byte)(v >>> 8);
+        bytes[size++] = (byte)v;
+    }
+
+    private void writeVarint(int v) {
+        ensureCapacity(5);
+        while ((v & ~0x7F) != 0) {
+            bytes[size++] = (byte)((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        bytes[size++] = (byte)v;
+    }
+
+    private static int readInt(byte[] b, int[] position) {
+        int p = position[0];
+        position[0] += 4;
+        return (b[p] & 0xFF) << 24 | (b[p+1] & 0xFF) << 16 | (b[p+2] & 0xFF) << 8 | (b[p+3] & 0xFF);
+    }
+
+    private static int readVarint(byte[] b, int[] position) {
+        int value = 0;
+        int shift = 0;
+        int v;
+        do {
+            v = b[position[0]++];
+            value |= (v & 0x7F) << shift;
+            shift += 7;
+        } while ((v & 0x80) != 0);
+        return value;
+    }
+}
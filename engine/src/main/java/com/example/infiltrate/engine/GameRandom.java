@@ -0,0 +1,89 @@
+package com.example.infiltrate.engine;
+
+import java.util.Random;
+
+/**
+ * The random source of a single game. A seed fully determines every number it produces, and
+ * since each game owns its own generator, games played in parallel never share any state.
+ * Uses the SplitMix64 algorithm (the same as java.util.SplittableRandom, which is not available
+ * on older Android versions) so it can be split into independent generators.
+ */
+public class GameRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    /**
+     * Creates a generator with an unpredictable seed.
+     */
+    public GameRandom() {
+        this(mix64(System.nanoTime()) ^ mix64(System.currentTimeMillis()));
+    }
+
+    /**
+     * Creates a generator whose output is fully determined by the seed.
+     * @param seed - The seed.
+     */
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates the generator for the index-th game of a run, so each game gets an independent
+     * stream no matter which thread plays it.
+     * @param seed - The seed of the whole run.
+     * @param index - The index of the game in the run.
+     * @return - A new generator.
+     */
+    public static GameRandom forIndex(long seed, long index) {
+        return new GameRandom(mix64(seed + (index + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Creates a new generator which shares no state with this one.
+     * @return - A new generator seeded from this one.
+     */
+    public GameRandom split() {
+        return new GameRandom(nextLong());
+    }
+
+    /**
+     * Creates a generator in the same state as this one, which produces the same numbers from
+     * now on. Used with Game.fork to replay a game's future exactly.
+     * @return - A new generator.
+     */
+    public GameRandom copy() {
+        GameRandom copy = new GameRandom(0);
+        copy.state = state;
+        return copy;
+    }
+
+    /**
+     * @return - The state, which new GameRandom(state) continues from.
+     */
+    long getState() { return state; }
+
+    // Called by the Random constructor as well
+    @Override
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int)(nextLong() >>> (64 - bits));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
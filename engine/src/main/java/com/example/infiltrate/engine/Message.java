@@ -0,0 +1,92 @@
+package com.example.infiltrate.engine;
+
+import java.util.List;
+
+/**
+ * A single event in a player's message log. Messages refer to players by id and are only turned
+ * into text when they are shown, and the same message object can be shared by the logs of
+ * several players.
+ */
+public class Message {
+    public enum Type {
+        NO_TARGET, // the player selected no target
+        SUCCESS, // the player's action on the target succeeded
+        FAILURE, // the player's action on the target failed
+        REVEAL, // the target's role was revealed to the player
+        DIED, // the player was killed and was given a new role
+        REPLACED_CITIZEN, // the player became a CITIZEN when none were left alive
+        REPLACED_INFILTRATOR // the player became an INFILTRATOR when none were left alive
+    }
+
+    public static final Message NO_TARGET = new Message(Type.NO_TARGET, Game.NO_TARGET, null);
+    public static final Message DIED = new Message(Type.DIED, Game.NO_TARGET, null);
+    public static final Message REPLACED_CITIZEN =
+            new Message(Type.REPLACED_CITIZEN, Game.NO_TARGET, null);
+    public static final Message REPLACED_INFILTRATOR =
+            new Message(Type.REPLACED_INFILTRATOR, Game.NO_TARGET, null);
+
+    public final Type type;
+    public final int target; // id of the player the message is about, or Game.NO_TARGET
+    public final Game.Role role; // the revealed role, for REVEAL
+
+    Message(Type type, int target, Game.Role role) {
+        this.type = type;
+        this.target = target;
+        this.role = role;
+    }
+
+    static Message success(int target) { return new Message(Type.SUCCESS, target, null); }
+    static Message failure(int target) { return new Message(Type.FAILURE, target, null); }
+    static Message reveal(int target, Game.Role role) { return new Message(Type.REVEAL, target, role); }
+
+    /**
+     * Recreates a message received from elsewhere, such as a game server.
+     * @param type - The type of the message.
+     * @param target - The id of the player the message is about, ignored unless the type has one.
+     * @param role - The revealed role, ignored unless the type is REVEAL.
+     * @return - The message.
+     */
+    public static Message of(Type type, int target, Game.Role role) {
+        switch (type) {
+            case NO_TARGET: return NO_TARGET;
+            case SUCCESS: return success(target);
+            case FAILURE: return failure(target);
+            case REVEAL: return reveal(target, role);
+            case DIED: return DIED;
+            case REPLACED_CITIZEN: return REPLACED_CITIZEN;
+            case REPLACED_INFILTRATOR: return REPLACED_INFILTRATOR;
+            default: throw new AssertionError("Something Broke!");
+        }
+    }
+
+    /**
+     * Appends the text of the message, starting with a new line.
+     * @param sb - Where to append the text.
+     * @param playerNames - The names of the players, indexed by player id.
+     */
+    public void render(StringBuilder sb, List<String> playerNames) {
+        switch (type) {
+            case NO_TARGET:
+                sb.append("\nNo target was selected.");
+                break;
+            case SUCCESS:
+                sb.append("\nSuccess on ").append(playerNames.get(target));
+                break;
+            case FAILURE:
+                sb.append("\nFailure on ").append(playerNames.get(target));
+                break;
+            case REVEAL:
+                sb.append("\n").append(playerNames.get(target)).append(" has role ").append(role.name());
+                break;
+            case DIED:
+                sb.append("\nYou have died.\nYou now have a new role.");
+                break;
+            case REPLACED_CITIZEN:
+                sb.append("\nYou have taken the place of a dead CITIZEN.\nYou are now a CITIZEN.");
+                break;
+            case REPLACED_INFILTRATOR:
+                sb.append("\nYou have taken the place of a dead INFILTRATOR.\nYou are now an INFILTRATOR.");
+                break;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.infiltrate.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Checks that a set of role restrictions can be played and deals the starting roles. The check
+ * only needs the sums of the restrictions for each kind of role (living/dead x citizen/
+ * infiltrator), so it is O(R) for R roles however many players there are, and a set it accepts
+ * never runs a pool dry while dealing:
+ * 1. No minimum is negative or above its maximum.
+ * 2. The living minimums fit among the players, and the living maximums cover them.
+ * 3. Each side has at least as many dead roles as it can have living players at the start, so
+ *    every starting player can die once.
+ * Dealing is one pass over the players in a shuffled order, and a player is never dealt from a
+ * side whose living pool has run out. This draws differently from the old constructor, so a seed
+ * deals a different game than before and GameLogs saved before it cannot be replayed (see
+ * GameLog.VERSION).
+ */
+public class RoleAssigner {
+    private static final Game.Role[] ROLES = Game.Role.values();
+
+    private final int playerCount;
+    private final int[] minimums; // indexed by Role ordinal
+    private final int[] maximums; // indexed by Role ordinal
+    private final int[] livingMinimums = new int[2]; // indexed by side, citizens first
+    private final int[] livingMaximums = new int[2];
+    private final int[] deadMaximums = new int[2];
+    private final String problem; // null if the restrictions can be played
+
+    /**
+     * RoleAssigner constructor, which checks the restrictions.
+     * @param playerCount - The number of players.
+     * @param minimums - The minimum of each role, indexed by Role ordinal.
+     * @param maximums - The maximum of each role, indexed by Role ordinal.
+     */
+    public RoleAssigner(int playerCount, int[] minimums, int[] maximums) {
+        this.playerCount = playerCount;
+        this.minimums = minimums.clone();
+        this.maximums = maximums.clone();
+        problem = check();
+    }
+
+    /**
+     * @return - Whether the restrictions can be played.
+     */
+    public boolean isFeasible() { return problem == null; }
+
+    /**
+     * @return - Why the restrictions cannot be played, in words fit to show a player, or null if
+     *           they can.
+     */
+    public String getProblem() { return problem; }
+
+    /**
+     * Deals a role to every player and fills the role pools from the rest of the restrictions.
+     * @param random - The random source of the game.
+     * @param pools - The empty role pools, laid out as in Game.getRolePool.
+     * @param order - Filled with the player ids in turn order.
+     * @param roles - Filled with the role of each player id.
+     * @throws IllegalArgumentException - If the restrictions cannot be played.
+     */
+    void assign(Random random, RolePool[][] pools, int[] order, Game.Role[] roles) {
+        if (problem != null) throw new IllegalArgumentException(problem);
+
+        // Shuffle the ids rather than the names so the ids stay in the given order. This swaps
+        // exactly as Collections.shuffle does.
+        for (int i=0;i<playerCount;i++) order[i] = i;
+        for (int i=playerCount;i>1;i--) {
+            int j = random.nextInt(i);
+            int id = order[i - 1];
+            order[i - 1] = order[j];
+            order[j] = id;
+        }
+        ArrayList<Game.Role> roleOrder = new ArrayList<>(Arrays.asList(ROLES));
+        Collections.shuffle(roleOrder, random);
+
+        // Deal the minimum number of living roles
+        int dealt = 0;
+        for (Game.Role role : roleOrder) {
+            if (!role.isAlive) continue;
+            for (int i=0;i<minimums[role.ordinal()];i++) roles[order[dealt++]] = role;
+        }
+        // Generate the pools: minimums of dead roles are drawn first, then the rest of the
+        // roles up to the maximums
+        for (Game.Role role : roleOrder) {
+            RolePool pool = pools[role.isCitizen ? 0 : 1][role.isAlive ? 0 : 1];
+            if (!role.isAlive) pool.addMinimum(role, minimums[role.ordinal()]);
+            pool.addRemaining(role, maximums[role.ordinal()] - minimums[role.ordinal()]);
+        }
+        // Deal the extra players from a random side, or the other if that one has run out
+        while (dealt < playerCount) {
+            int side = random.nextDouble() < 0.5 ? 0 : 1;
+            if (pools[side][0].isEmpty()) side = 1 - side;
+            roles[order[dealt++]] = pools[side][0].draw(random);
+        }
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * @return - The first restriction broken, or null if there are none.
+     */
+    private String check() {
+        if (playerCount < 0) return "Negative number of players";
+        if (minimums.length != ROLES.length || maximums.length != ROLES.length) return "Need a restriction for every role";
+        for (Game.Role role : ROLES) {
+            int min = minimums[role.ordinal()], max = maximums[role.ordinal()];
+            if (min < 0) return "Minimum is negative";
+            if (min > max) return "Minimum is greater than maximum";
+            int side = role.isCitizen ? 0 : 1;
+            if (role.isAlive) {
+                livingMinimums[side] += min;
+                livingMaximums[side] += max;
+            } else {
+                deadMaximums[side] += max;
+            }
+        }
+        int extra = playerCount - livingMinimums[0] - livingMinimums[1];
+        if (extra < 0) return "Minimum living roles is too high";
+        if (livingMaximums[0] + livingMaximums[1] < playerCount) return "Maximum living roles is too low";
+        // The most living players a side can be dealt is its minimums plus every extra player
+        // it has room for
+        if (deadMaximums[0] < livingMinimums[0] + Math.min(extra, livingMaximums[0] - livingMinimums[0])) {
+            return "Maximum dead citizen roles too low";
+        }
+        if (deadMaximums[1] < livingMinimums[1] + Math.min(extra, livingMaximums[1] - livingMinimums[1])) {
+            return "Maximum dead infiltrator roles too low";
+        }
+        return null;
+    }
+}
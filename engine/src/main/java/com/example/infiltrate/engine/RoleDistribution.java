@@ -0,0 +1,394 @@
+package com.example.infiltrate.engine;
+
+import java.util.Arrays;
+
+/**
+ * The exact distribution of the roles players start with, and of what is left in the role
+ * pools, for a set of role restrictions, worked out without sampling. RoleAssigner deals:
+ * 1. The minimum of every living role, which every game starts with.
+ * 2. Then each extra player from a side picked by a fair coin (the other side once one runs
+ *    out), drawing evenly between the living roles of that side which still have some left.
+ * The number of extra citizens is therefore a binomial count clamped to what each side can
+ * take, and each side's extra roles only depend on how many it drew. Drawing evenly between the
+ * roles with some left is the same as drawing evenly between all of them and skipping the full
+ * ones, so the chance of reaching a count vector is a multinomial term for its roles with some
+ * left, times a factor that only depends on which roles are full and how many draws there were.
+ * Those factors take O(2^R R D) time for R roles and D draws per side, and the count
+ * distributions come from convolving the roles one at a time, so no table of count vectors is
+ * ever kept. Dead pools are never drawn from while dealing, so every game starts with each dead
+ * role up to its maximum in its pool.
+ */
+public class RoleDistribution {
+    /**
+     * Receives the starting outcomes listed by forEach.
+     */
+    public interface Visitor {
+        /**
+         * @param counts - The number of players starting with each role, indexed by Role
+         *               ordinal. The array is reused for the next outcome.
+         * @param probability - The probability of starting with exactly these counts.
+         */
+        void visit(int[] counts, double probability);
+    }
+
+    private static final Game.Role[] ROLES = Game.Role.values();
+
+    private final int[] minimums; // indexed by Role ordinal
+    private final int[] maximums; // indexed by Role ordinal
+    private final int extra; // players dealt past the living minimums
+    private final double[] logFactorials; // indexed by n up to extra
+    private final double[] citizenExtras; // probability of each number of extra citizens
+    private final Side[] sides = new Side[2]; // citizens first
+    private final double[][] marginals; // probability of each count, indexed by Role ordinal
+
+    /**
+     * RoleDistribution constructor, which works out the whole distribution.
+     * @param playerCount - The number of players.
+     * @param minimums - The minimum of each role, indexed by Role ordinal.
+     * @param maximums - The maximum of each role, indexed by Role ordinal.
+     * @throws IllegalArgumentException - If the restrictions cannot be played, see RoleAssigner.
+     */
+    public RoleDistribution(int playerCount, int[] minimums, int[] maximums) {
+        RoleAssigner assigner = new RoleAssigner(playerCount, minimums, maximums);
+        if (!assigner.isFeasible()) throw new IllegalArgumentException(assigner.getProblem());
+        this.minimums = minimums.clone();
+        this.maximums = maximums.clone();
+
+        int living = 0;
+        for (Game.Role role : ROLES) if (role.isAlive) living += minimums[role.ordinal()];
+        extra = playerCount - living;
+        logFactorials = new double[extra + 1];
+        for (int i=1;i<=extra;i++) logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+        for (int side=0;side<2;side++) sides[side] = new Side(side == 0);
+        citizenExtras = clampedBinomial(extra, extra - sides[1].capacity, sides[0].capacity);
+
+        marginals = new double[ROLES.length][];
+        for (Game.Role role : ROLES) {
+            marginals[role.ordinal()] = new double[role.isAlive ? maximums[role.ordinal()] + 1 : 1];
+            if (!role.isAlive) marginals[role.ordinal()][0] = 1;
+        }
+        for (int side=0;side<2;side++) sides[side].addMarginals();
+    }
+
+    /**
+     * @param counts - The number of players starting with each role, indexed by Role ordinal.
+     * @return - The probability of a game starting with exactly these counts.
+     */
+    public double getProbability(int[] counts) {
+        int[] drawn = new int[2];
+        int[][] digits = {new int[sides[0].roles.length], new int[sides[1].roles.length]};
+        for (Game.Role role : ROLES) {
+            int count = counts[role.ordinal()];
+            if (!role.isAlive) {
+                if (count != 0) return 0;
+                continue;
+            }
+            int side = role.isCitizen ? 0 : 1;
+            int a = count - minimums[role.ordinal()];
+            int place = sides[side].placeOf(role);
+            if (a < 0 || (place < 0 ? a > 0 : a > sides[side].caps[place])) return 0;
+            drawn[side] += a;
+            if (place >= 0) digits[side][place] = a;
+        }
+        if (drawn[0] + drawn[1] != extra || drawn[0] >= citizenExtras.length) return 0;
+        if (drawn[0] > sides[0].most || drawn[1] > sides[1].most) return 0;
+        return citizenExtras[drawn[0]] * sides[0].getProbability(digits[0], drawn[0])
+                * sides[1].getProbability(digits[1], drawn[1]);
+    }
+
+    /**
+     * @param role - A role.
+     * @return - The probability of each number of players starting with the role, indexed by
+     *           the number. Always [1] for dead roles.
+     */
+    public double[] getCountDistribution(Game.Role role) { return marginals[role.ordinal()].clone(); }
+
+    /**
+     * @param role - A role.
+     * @return - The expected number of players starting with the role.
+     */
+    public double getExpectedCount(Game.Role role) {
+        double sum = 0;
+        double[] marginal = marginals[role.ordinal()];
+        for (int c=0;c<marginal.length;c++) sum += c * marginal[c];
+        return sum;
+    }
+
+    /**
+     * @param role - A role.
+     * @return - The probability of each number of the role left in its pool once every player
+     *           has been dealt, indexed by the number. Dead roles are always at their maximum.
+     */
+    public double[] getPoolDistribution(Game.Role role) {
+        int max = maximums[role.ordinal()];
+        double[] pool = new double[max + 1];
+        if (!role.isAlive) {
+            pool[max] = 1;
+            return pool;
+        }
+        double[] marginal = marginals[role.ordinal()];
+        for (int c=0;c<marginal.length;c++) pool[max - c] += marginal[c];
+        return pool;
+    }
+
+    /**
+     * @param role - A dead role.
+     * @return - How many of the role are drawn from its pool before any role without a minimum.
+     */
+    public int getPoolMinimum(Game.Role role) { return role.isAlive ? 0 : minimums[role.ordinal()]; }
+
+    /**
+     * @return - The probability of each number of extra players dealt citizen roles, indexed by
+     *           the number.
+     */
+    public double[] getExtraCitizenDistribution() { return citizenExtras.clone(); }
+
+    /**
+     * Lists every set of starting counts which can happen, with its probability.
+     * @param visitor - Receives each outcome.
+     */
+    public void forEach(Visitor visitor) {
+        int[] counts = new int[ROLES.length];
+        for (Game.Role role : ROLES) if (role.isAlive) counts[role.ordinal()] = minimums[role.ordinal()];
+        Side citizens = sides[0], infiltrators = sides[1];
+        int[] citizenDigits = new int[citizens.roles.length];
+        int[] infiltratorDigits = new int[infiltrators.roles.length];
+        for (int k=0;k<citizenExtras.length;k++) {
+            if (citizenExtras[k] == 0) continue;
+            int j = extra - k;
+            for (boolean c=citizens.next(citizenDigits, k, true);c;c=citizens.next(citizenDigits, k, false)) {
+                double pc = citizens.getProbability(citizenDigits, k);
+                if (pc == 0) continue;
+                citizens.setCounts(citizenDigits, counts);
+                boolean more = infiltrators.next(infiltratorDigits, j, true);
+                for (;more;more=infiltrators.next(infiltratorDigits, j, false)) {
+                    double pi = infiltrators.getProbability(infiltratorDigits, j);
+                    if (pi == 0) continue;
+                    infiltrators.setCounts(infiltratorDigits, counts);
+                    visitor.visit(counts, citizenExtras[k] * pc * pi);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Game.Role role : ROLES) {
+            if (!role.isAlive || maximums[role.ordinal()] == 0) continue;
+            sb.append(role).append(": ").append(String.format("%.3f", getExpectedCount(role)));
+            double[] marginal = marginals[role.ordinal()];
+            sb.append(" [");
+            for (int c=0;c<marginal.length;c++) {
+                if (marginal[c] == 0) continue;
+                sb.append(' ').append(c).append('=').append(String.format("%.4f", marginal[c]));
+            }
+            sb.append(" ]\n");
+        }
+        return sb.toString();
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * The extra roles of one side. Think of every role as drawing on its own at the times of a
+     * Poisson process, keeping the draws until it is full: the order of the draws is then even
+     * between the roles with some left, as when dealing. Integrating over the time the count
+     * vector is reached splits its chance into the multinomial chance of its counts for the
+     * roles with some left, times full[set][s] for the set of full roles and the sum s.
+     */
+    private class Side {
+        final Game.Role[] roles; // living roles of the side with room above their minimum
+        final int[] caps; // most extra players each role can be dealt
+        final int capacity; // most extra players the side can be dealt
+        final int most; // most extra players the side is ever dealt
+        final double[][] full; // indexed by the bits of the full roles and the number of draws
+
+        Side(boolean isCitizen) {
+            int roleCount = 0;
+            int total = 0;
+            for (Game.Role role : ROLES) {
+                if (role.isAlive && role.isCitizen == isCitizen && maximums[role.ordinal()] > minimums[role.ordinal()]) {
+                    roleCount++;
+                    total += maximums[role.ordinal()] - minimums[role.ordinal()];
+                }
+            }
+            capacity = total;
+            most = Math.min(extra, capacity); // no more than this is ever drawn
+            roles = new Game.Role[roleCount];
+            caps = new int[roleCount];
+            int r = 0;
+            for (Game.Role role : ROLES) {
+                if (role.isAlive && role.isCitizen == isCitizen && maximums[role.ordinal()] > minimums[role.ordinal()]) {
+                    roles[r] = role;
+                    caps[r++] = maximums[role.ordinal()] - minimums[role.ordinal()];
+                }
+            }
+
+            // Before any role is full every draw is even, so the factor is 1. After that, the
+            // factor grows by the chance that one of the set fills last, with its final draw
+            // coming after exactly s - fill draws of the roles with some left.
+            full = new double[1 << roleCount][most + 1];
+            Arrays.fill(full[0], 1);
+            for (int set=1;set<full.length;set++) {
+                int open = roleCount - Integer.bitCount(set);
+                int fill = 0; // draws taken by the full roles
+                for (int k=0;k<roleCount;k++) if ((set & 1 << k) != 0) fill += caps[k];
+                for (int s=fill;s<=most;s++) {
+                    double p = s > fill ? full[set][s - 1] : 0;
+                    for (int k=0;k<roleCount;k++) {
+                        if ((set & 1 << k) != 0) p += full[set & ~(1 << k)][s - 1] * lastDraw(caps[k], s - fill, open);
+                    }
+                    full[set][s] = p;
+                }
+            }
+        }
+
+        int placeOf(Game.Role role) {
+            for (int k=0;k<roles.length;k++) if (roles[k] == role) return k;
+            return -1;
+        }
+
+        /**
+         * @param digits - The extra count of each role, within the caps.
+         * @param sum - The sum of the counts, at most most.
+         * @return - The chance that the side's extra roles are these after sum draws.
+         */
+        double getProbability(int[] digits, int sum) {
+            int set = 0;
+            int open = 0;
+            int rest = sum; // draws of the roles with some left
+            double log = 0;
+            for (int k=0;k<roles.length;k++) {
+                if (digits[k] == caps[k]) {
+                    set |= 1 << k;
+                    rest -= caps[k];
+                } else {
+                    open++;
+                    log -= logFactorials[digits[k]];
+                }
+            }
+            if (rest > 0) log += logFactorials[rest] - rest * Math.log(open);
+            return Math.exp(log) * full[set][sum];
+        }
+
+        /**
+         * Steps to the next count vector with the given sum, starting from all zeros. The first
+         * role makes up the sum, so only the others are counted through.
+         * @return - Whether there was one.
+         */
+        boolean next(int[] digits, int sum, boolean first) {
+            if (roles.length == 0) return first && sum == 0;
+            if (first) Arrays.fill(digits, 0);
+            int rest = first ? 0 : sum - digits[0]; // sum of the roles after the first
+            if (!first || sum > caps[0]) {
+                do {
+                    int k = 1;
+                    while (k < roles.length && (digits[k] == caps[k] || rest == sum)) {
+                        rest -= digits[k];
+                        digits[k++] = 0;
+                    }
+                    if (k == roles.length) return false;
+                    digits[k]++;
+                    rest++;
+                } while (sum - rest > caps[0]);
+            }
+            digits[0] = sum - rest;
+            return true;
+        }
+
+        void setCounts(int[] digits, int[] counts) {
+            for (int k=0;k<roles.length;k++) counts[roles[k].ordinal()] = minimums[roles[k].ordinal()] + digits[k];
+        }
+
+        /**
+         * Adds the side's part of every role's count distribution, weighing each number of draws
+         * by the probability that the side is dealt that many extra players. For each set of full
+         * roles, the counts of the others are a multinomial split of the rest of the draws with
+         * every count below its cap.
+         */
+        void addMarginals() {
+            boolean isCitizen = this == sides[0];
+            for (Game.Role role : ROLES) {
+                if (role.isAlive && role.isCitizen == isCitizen && placeOf(role) < 0) {
+                    marginals[role.ordinal()][minimums[role.ordinal()]] = 1;
+                }
+            }
+            double[] weights = new double[most + 1];
+            for (int s=0;s<=most;s++) {
+                int k = isCitizen ? s : extra - s;
+                weights[s] = k >= 0 && k < citizenExtras.length ? citizenExtras[k] : 0;
+            }
+
+            // under[set][n]: chance that n even draws between the set leave every role below its cap
+            double[][] under = new double[full.length][most + 1];
+            under[0][0] = 1;
+            for (int set=1;set<under.length;set++) {
+                int k = 31 - Integer.numberOfLeadingZeros(set);
+                int others = set & ~(1 << k);
+                double p = 1.0 / Integer.bitCount(set);
+                for (int n=0;n<=most;n++) {
+                    for (int x=0;x<=Math.min(n, caps[k] - 1);x++) {
+                        under[set][n] += binomial(n, x, p) * under[others][n - x];
+                    }
+                }
+            }
+
+            for (int set=0;set<full.length;set++) {
+                int open = full.length - 1 & ~set;
+                int fill = 0;
+                for (int k=0;k<roles.length;k++) if ((set & 1 << k) != 0) fill += caps[k];
+                for (int s=fill;s<=most;s++) {
+                    double base = weights[s] * full[set][s];
+                    if (base == 0) continue;
+                    int rest = s - fill;
+                    for (int k=0;k<roles.length;k++) {
+                        double[] marginal = marginals[roles[k].ordinal()];
+                        int min = minimums[roles[k].ordinal()];
+                        if ((set & 1 << k) != 0) {
+                            marginal[min + caps[k]] += base * under[open][rest];
+                            continue;
+                        }
+                        double p = 1.0 / Integer.bitCount(open);
+                        int others = open & ~(1 << k);
+                        for (int x=0;x<=Math.min(rest, caps[k] - 1);x++) {
+                            marginal[min + x] += base * binomial(rest, x, p) * under[others][rest - x];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return - The chance of x successes in n trials which each succeed with chance p.
+     */
+    private double binomial(int n, int x, double p) {
+        if (p == 1) return x == n ? 1 : 0;
+        return Math.exp(logFactorials[n] - logFactorials[x] - logFactorials[n - x]
+                + x * Math.log(p) + (n - x) * Math.log(1 - p));
+    }
+
+    /**
+     * With draws even between open roles and one more role, the chance that the other role's
+     * draw number cap comes after exactly n draws of the open roles (a negative binomial).
+     */
+    private double lastDraw(int cap, int n, int open) {
+        if (n == 0) return Math.exp(-cap * Math.log(open + 1));
+        if (open == 0) return 0;
+        return Math.exp(logFactorials[n + cap - 1] - logFactorials[n] - logFactorials[cap - 1]
+                + n * Math.log(open) - (n + cap) * Math.log(open + 1));
+    }
+
+    /**
+     * The distribution of a Binomial(n, 1/2) count clamped to [low, high], indexed by value.
+     * Worked out in logs so large n does not underflow.
+     */
+    private double[] clampedBinomial(int n, int low, int high) {
+        low = Math.max(low, 0);
+        high = Math.min(high, n);
+        double[] p = new double[high + 1];
+        for (int x=0;x<=n;x++) p[Math.min(Math.max(x, low), high)] += binomial(n, x, 0.5);
+        return p;
+    }
+}
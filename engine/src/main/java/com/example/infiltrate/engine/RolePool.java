@@ -0,0 +1,172 @@
+package com.example.infiltrate.engine;
+
+import java.util.Random;
+
+/**
+ * One of the four pools (living/dead x citizen/infiltrator) that roles are drawn from. Roles are
+ * kept as counts per Role ordinal rather than as a list, and each draw is O(log R) using Fenwick
+ * trees without allocating. The order roles come out in matches building a shuffled list:
+ * 1. Minimum roles (added for dead roles) are drawn first, in a uniformly random order.
+ * 2. Then the rest up to the maximums, where each draw picks evenly between the roles which
+ *    still have some left (as the old pick-a-random-restriction loop did).
+ * 3. Then roles put back by an EXORCIST, first in first out.
+ */
+public class RolePool {
+    private static final Game.Role[] ROLE_VALUES = Game.Role.values();
+    private static final int ROLES = ROLE_VALUES.length;
+
+    private final Fenwick minimums = new Fenwick(); // count of each minimum role left
+    private final Fenwick remaining = new Fenwick(); // 1 for each role with extra roles left
+    private final int[] remainingCounts = new int[ROLES];
+    private int[] returned = new int[4]; // ring buffer of returned role ordinals
+    private int returnedStart;
+    private int returnedSize;
+    private int size;
+
+    public RolePool() {}
+
+    /**
+     * Copies a pool, so the copy and the original can be drawn from independently.
+     * @param other - The pool to copy.
+     */
+    public RolePool(RolePool other) {
+        minimums.copyFrom(other.minimums);
+        remaining.copyFrom(other.remaining);
+        System.arraycopy(other.remainingCounts, 0, remainingCounts, 0, ROLES);
+        returned = other.returned.clone();
+        returnedStart = other.returnedStart;
+        returnedSize = other.returnedSize;
+        size = other.size;
+    }
+
+    /**
+     * Adds roles which are drawn before any others.
+     * @param role - The role.
+     * @param count - How many of it to add.
+     */
+    public void addMinimum(Game.Role role, int count) {
+        if (count <= 0) return;
+        minimums.add(role.ordinal(), count);
+        size += count;
+    }
+
+    /**
+     * Adds roles which are drawn once the minimum roles run out.
+     * @param role - The role.
+     * @param count - How many of it to add.
+     */
+    public void addRemaining(Game.Role role, int count) {
+        if (count <= 0) return;
+        if (remainingCounts[role.ordinal()] == 0) remaining.add(role.ordinal(), 1);
+        remainingCounts[role.ordinal()] += count;
+        size += count;
+    }
+
+    /**
+     * Puts a role back into the pool, to be drawn after every role already in it.
+     * @param role - The role.
+     */
+    public void add(Game.Role role) {
+        if (returnedSize == returned.length) {
+            int[] bigger = new int[returned.length * 2];
+            for (int i=0;i<returnedSize;i++) bigger[i] = returned[(returnedStart + i) % returned.length];
+            returned = bigger;
+            returnedStart = 0;
+        }
+        returned[(returnedStart + returnedSize) % returned.length] = role.ordinal();
+        returnedSize++;
+        size++;
+    }
+
+    /**
+     * Draws the next role out of the pool.
+     * @param random - The random source of the game.
+     * @return - The role.
+     */
+    public Game.Role draw(Random random) {
+        int ordinal;
+        if (minimums.total > 0) {
+            ordinal = minimums.find(random.nextInt(minimums.total));
+            minimums.add(ordinal, -1);
+        } else if (remaining.total > 0) {
+            ordinal = remaining.find(random.nextInt(remaining.total));
+            if (--remainingCounts[ordinal] == 0) remaining.add(ordinal, -1);
+        } else if (returnedSize > 0) {
+            ordinal = returned[returnedStart];
+            returnedStart = (returnedStart + 1) % returned.length;
+            returnedSize--;
+        } else {
+            throw new IllegalStateException("Role pool is empty");
+        }
+        size--;
+        return ROLE_VALUES[ordinal];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * @param role - A role.
+     * @return - How many of the role are left among the minimum roles.
+     */
+    int getMinimumCount(Game.Role role) { return minimums.get(role.ordinal()); }
+
+    /**
+     * @param role - A role.
+     * @return - How many of the role are left among the roles up to the maximums.
+     */
+    int getRemainingCount(Game.Role role) { return remainingCounts[role.ordinal()]; }
+
+    int getReturnedCount() { return returnedSize; }
+
+    /**
+     * @param index - Position among the roles put back, 0 being the next one drawn.
+     * @return - The role.
+     */
+    Game.Role getReturned(int index) { return ROLE_VALUES[returned[(returnedStart + index) % returned.length]]; }
+
+    /**
+     * Fenwick (binary indexed) tree of counts per role ordinal.
+     */
+    private static class Fenwick {
+        private final int[] tree = new int[ROLES + 1];
+        private int total;
+
+        void copyFrom(Fenwick other) {
+            System.arraycopy(other.tree, 0, tree, 0, tree.length);
+            total = other.total;
+        }
+
+        int get(int ordinal) {
+            return prefix(ordinal + 1) - prefix(ordinal);
+        }
+
+        private int prefix(int end) {
+            int sum = 0;
+            for (int i=end;i>0;i-=i&-i) sum += tree[i];
+            return sum;
+        }
+
+        void add(int ordinal, int delta) {
+            total += delta;
+            for (int i=ordinal+1;i<=ROLES;i+=i&-i) tree[i] += delta;
+        }
+
+        /**
+         * Finds the role ordinal whose counts cover position u when all counts are laid out
+         * in Role order.
+         * @param u - A position from 0 to total - 1.
+         * @return - The role ordinal.
+         */
+        int find(int u) {
+            int i = 0;
+            for (int step=Integer.highestOneBit(ROLES);step>0;step>>=1) {
+                if (i + step <= ROLES && tree[i + step] <= u) {
+                    i += step;
+                    u -= tree[i];
+                }
+            }
+            return i;
+        }
+    }
+}
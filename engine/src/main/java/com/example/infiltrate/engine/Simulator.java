@@ -0,0 +1,284 @@
+package com.example.infiltrate.engine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless batch engine which plays many complete games of a role configuration without any
+ * UI and reports the win rates, game lengths and per-role action success rates. Games are
+ * split across all cores using a fork-join pool. Every game has its own GameRandom derived from
+ * the run's seed, so a run is reproducible and no random state is shared between threads.
+ * ForkJoinPool needs API level 21 when the engine runs on Android.
+ */
+public class Simulator {
+    /**
+     * Chooses the target of a player during a simulated turn.
+     */
+    public interface TargetSelector {
+        /**
+         * @param game - The game being simulated.
+         * @param player - The id of the player whose turn it is.
+         * @param legalTargets - The ids of the targets the player can legally select (no
+         *                     target is always legal as well).
+         * @param random - The random source of the game.
+         * @return - The id of the selected target, which must be in legalTargets, or
+         *           Game.NO_TARGET.
+         */
+        int select(Game game, int player, BitSet legalTargets, Random random);
+    }
+
+    /**
+     * Selects a uniformly random legal target (including no target).
+     */
+    public static final TargetSelector RANDOM_TARGETS = new TargetSelector() {
+        @Override
+        public int select(Game game, int player, BitSet legalTargets, Random random) {
+            int skip = random.nextInt(legalTargets.cardinality() + 1);
+            int target = legalTargets.nextSetBit(0);
+            for (;skip>0;skip--) target = legalTargets.nextSetBit(target + 1);
+            return target; // nextSetBit gives -1 (Game.NO_TARGET) after the last target
+        }
+    };
+
+    private static final int GAMES_PER_TASK = 256; // games played sequentially by one task
+
+    private final ArrayList<String> playerNames; // the same names are used for every game
+    private final int[] minimums; // minimum of each role, indexed by Role ordinal
+    private final int[] maximums; // maximum of each role, indexed by Role ordinal
+    private final int maxTurns; // turns after which an unfinished game is abandoned
+    private final TargetSelector selector;
+    private final long seed; // seed of the whole run
+    private final boolean rounds; // whether every game is played with Game.doRound
+
+    /**
+     * Simulator constructor.
+     * @param playerCount - Number of players in every game.
+     * @param minimums - Minimum number of each role, indexed by Role ordinal (as built by
+     *                 RoleSetupActivity.onNextBtnClicked).
+     * @param maximums - Maximum number of each role, indexed by Role ordinal.
+     * @param maxTurns - Number of turns after which a game is counted as unfinished.
+     * @param selector - How each player chooses their target.
+     * @param seed - Seed which determines every game of a run.
+     */
+    public Simulator(int playerCount, int[] minimums, int[] maximums, int maxTurns,
+                     TargetSelector selector, long seed) {
+        this(playerCount, minimums, maximums, maxTurns, selector, seed, false);
+    }
+
+    /**
+     * Simulator constructor.
+     * @param playerCount - Number of players in every game.
+     * @param minimums - Minimum number of each role, indexed by Role ordinal.
+     * @param maximums - Maximum number of each role, indexed by Role ordinal.
+     * @param maxTurns - Number of turns after which a game is counted as unfinished.
+     * @param selector - How each player chooses their target.
+     * @param seed - Seed which determines every game of a run.
+     * @param rounds - Whether every player selects at the start of a round and the round is
+     *               resolved with Game.doRound, rather than selecting just before their turn.
+     */
+    public Simulator(int playerCount, int[] minimums, int[] maximums, int maxTurns,
+                     TargetSelector selector, long seed, boolean rounds) {
+        this.playerNames = new ArrayList<>();
+        for (int i=0;i<playerCount;i++) playerNames.add("Player" + (i+1));
+        this.minimums = minimums.clone();
+        this.maximums = maximums.clone();
+        this.maxTurns = maxTurns;
+        this.selector = selector;
+        this.seed = seed;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Plays the given number of games using every core.
+     * @param games - Number of games to play.
+     * @return - The combined results of all games.
+     */
+    public Result run(long games) {
+        return run(games, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plays the given number of games on the given pool.
+     * @param games - Number of games to play.
+     * @param pool - The pool that runs the games.
+     * @return - The combined results of all games.
+     */
+    public Result run(long games, ForkJoinPool pool) {
+        return pool.invoke(new SimulationTask(0, games));
+    }
+
+    /**
+     * Plays a single game to completion (or to maxTurns) and adds it to the result.
+     * @param index - Index of the game in the run.
+     * @param result - Result to add the game to.
+     */
+    private void playGame(long index, Result result) {
+        Random random = GameRandom.forIndex(seed, index);
+
+        Game g;
+        try {
+            g = new Game(playerNames, minimums, maximums, random);
+        } catch (IllegalArgumentException e) {
+            // The role setup cannot be dealt (see RoleAssigner). A setup that can be dealt never
+            // runs a pool dry, so anything thrown later is a bug and is left to fail the run.
+            result.crashed++;
+            return;
+        }
+        if (rounds) {
+            playRounds(g, random, result);
+            return;
+        }
+        int turns = 0;
+        BitSet legalTargets = new BitSet();
+        while (turns < maxTurns) {
+            int player = g.getCurrentPlayer();
+            Game.Role role = g.getCurrentPlayerRole();
+            int target = selector.select(g, player, g.getLegalTargets(player, legalTargets), random);
+            g.setSelection(player, target);
+            boolean success = g.doTurn();
+            turns++;
+            if (target != Game.NO_TARGET) {
+                result.attempts[role.ordinal()]++;
+                if (success) result.successes[role.ordinal()]++;
+            }
+            if (g.checkWin()) {
+                if (g.getWinningSide().equals("CITIZENS")) result.citizenWins++;
+                else result.infiltratorWins++;
+                result.addLength(turns);
+                return;
+            }
+            g.balance();
+        }
+        result.unfinished++;
+    }
+
+    /**
+     * Plays a game round by round with Game.doRound. Actions are counted under the role the
+     * player had when they selected their target, and only if their turn came that round.
+     */
+    private void playRounds(Game g, Random random, Result result) {
+        int n = playerNames.size();
+        int[] selections = new int[n];
+        Game.Role[] selectedAs = new Game.Role[n];
+        BitSet legalTargets = new BitSet();
+        BitSet successes = new BitSet();
+        int turns = 0;
+        while (turns < maxTurns) {
+            for (int p=0;p<n;p++) {
+                selectedAs[p] = g.getPlayerRole(p);
+                selections[p] = selector.select(g, p, g.getLegalTargets(p, legalTargets), random);
+            }
+            turns += g.doRound(selections, successes);
+            for (int p=0;p<n;p++) {
+                if (selections[p] == Game.NO_TARGET || !g.hasPlayedThisRound(p)) continue;
+                result.attempts[selectedAs[p].ordinal()]++;
+                if (successes.get(p)) result.successes[selectedAs[p].ordinal()]++;
+            }
+            if (g.checkWin()) {
+                if (g.getWinningSide().equals("CITIZENS")) result.citizenWins++;
+                else result.infiltratorWins++;
+                result.addLength(turns);
+                return;
+            }
+        }
+        result.unfinished++;
+    }
+
+    private class SimulationTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+        private final long start;
+        private final long end;
+
+        SimulationTask(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Result compute() {
+            if (end - start <= GAMES_PER_TASK) {
+                Result result = new Result();
+                for (long i=start;i<end;i++) playGame(i, result);
+                return result;
+            }
+            long mid = start + (end - start) / 2;
+            SimulationTask left = new SimulationTask(start, mid);
+            left.fork();
+            Result result = new SimulationTask(mid, end).compute();
+            result.add(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * The combined outcome of a batch of simulated games.
+     */
+    public static class Result {
+        public long citizenWins;
+        public long infiltratorWins;
+        public long unfinished; // games that reached maxTurns without a winner
+        public long crashed; // games whose role setup could not be dealt
+        public long totalTurns; // summed length of finished games
+        public int minTurns = Integer.MAX_VALUE;
+        public int maxTurns;
+        public final long[] attempts = new long[Game.Role.values().length]; // targets selected
+        public final long[] successes = new long[Game.Role.values().length];
+
+        public long getGames() { return citizenWins + infiltratorWins + unfinished + crashed; }
+        public long getFinishedGames() { return citizenWins + infiltratorWins; }
+        public double getCitizenWinRate() { return (double)citizenWins / getGames(); }
+        public double getInfiltratorWinRate() { return (double)infiltratorWins / getGames(); }
+        public double getAverageTurns() { return (double)totalTurns / getFinishedGames(); }
+
+        /**
+         * @param role - A role.
+         * @return - The fraction of that role's actions on a target which succeeded.
+         */
+        public double getSuccessRate(Game.Role role) {
+            return (double)successes[role.ordinal()] / attempts[role.ordinal()];
+        }
+
+        private void addLength(int turns) {
+            totalTurns += turns;
+            minTurns = Math.min(minTurns, turns);
+            maxTurns = Math.max(maxTurns, turns);
+        }
+
+        private void add(Result other) {
+            citizenWins += other.citizenWins;
+            infiltratorWins += other.infiltratorWins;
+            unfinished += other.unfinished;
+            crashed += other.crashed;
+            totalTurns += other.totalTurns;
+            minTurns = Math.min(minTurns, other.minTurns);
+            maxTurns = Math.max(maxTurns, other.maxTurns);
+            for (int i=0;i<attempts.length;i++) {
+                attempts[i] += other.attempts[i];
+                successes[i] += other.successes[i];
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Games: ").append(getGames());
+            sb.append("\nCITIZENS won: ").append(String.format("%.4f", getCitizenWinRate()));
+            sb.append("\nINFILTRATORS won: ").append(String.format("%.4f", getInfiltratorWinRate()));
+            sb.append("\nUnfinished: ").append(unfinished).append(", crashed: ").append(crashed);
+            if (getFinishedGames() > 0) {
+                sb.append("\nTurns: average ").append(String.format("%.2f", getAverageTurns()))
+                        .append(", min ").append(minTurns).append(", max ").append(maxTurns);
+            }
+            for (Game.Role role : Game.Role.values()) {
+                if (attempts[role.ordinal()] == 0) continue;
+                sb.append("\n").append(role.name()).append(": ")
+                        .append(String.format("%.4f", getSuccessRate(role)))
+                        .append(" of ").append(attempts[role.ordinal()]);
+            }
+            return sb.toString();
+        }
+    }
+}
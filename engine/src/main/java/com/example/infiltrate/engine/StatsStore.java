@@ -0,0 +1,424 @@
+package com.example.infiltrate.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Lifetime statistics of every player name across finished games, kept in a folder of the
+ * app's files. Each finished game is appended as one small record to a records file which is
+ * never rewritten, so it is the history the statistics can always be rebuilt from. Alongside
+ * it an index file holds the running totals of every player and how much of the records file
+ * they cover. Opening the store only reads the index, and any records past what it covers
+ * (if the app died between the two writes), so queries never rescan old games and cost the
+ * same after ten games as after ten thousand.
+ *
+ * File formats (integers are unsigned varints unless stated otherwise):
+ * records: "INFR" (4 bytes), version (1 byte), then for each game the record length followed
+ *          by the player count and, for each player, their name as a length followed by UTF-8
+ *          bytes, one byte of (won << 1 | citizen at the end), a bitmask of the roles held by
+ *          Role ordinal, kill attempts, kills, reveal attempts and reveals.
+ * index:   "INFS" (4 bytes), version (1 byte), length of the records covered (8 bytes
+ *          big-endian), count of the games covered, player count, then for each player their
+ *          name and totals in the order of the PlayerStats fields.
+ */
+public class StatsStore {
+    private static final int RECORDS_MAGIC = 0x494E4652; // "INFR"
+    private static final int INDEX_MAGIC = 0x494E4653; // "INFS"
+    private static final int VERSION = 1;
+    private static final int RECORDS_HEADER = 5; // bytes before the first record
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Game.Role[] ROLES = Game.Role.values();
+
+    /**
+     * The totals of one player name.
+     */
+    public static class PlayerStats {
+        public final String name;
+        public int games;
+        public int citizenGames; // games ended on the citizen side
+        public int citizenWins;
+        public int infiltratorGames; // games ended on the infiltrator side
+        public int infiltratorWins;
+        public final int[] roleGames = new int[ROLES.length]; // games each role was held in
+        public int killAttempts; // turns with a target in a role which kills
+        public int kills;
+        public int revealAttempts; // turns with a target in a role which reveals a role
+        public int reveals;
+
+        PlayerStats(String name) { this.name = name; }
+
+        PlayerStats(PlayerStats other) {
+            this(other.name);
+            games = other.games;
+            citizenGames = other.citizenGames;
+            citizenWins = other.citizenWins;
+            infiltratorGames = other.infiltratorGames;
+            infiltratorWins = other.infiltratorWins;
+            System.arraycopy(other.roleGames, 0, roleGames, 0, roleGames.length);
+            killAttempts = other.killAttempts;
+            kills = other.kills;
+            revealAttempts = other.revealAttempts;
+            reveals = other.reveals;
+        }
+
+        public int getWins() { return citizenWins + infiltratorWins; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(name);
+            sb.append(": won ").append(getWins()).append(" of ").append(games);
+            sb.append(" (CITIZEN ").append(citizenWins).append('/').append(citizenGames);
+            sb.append(", INFILTRATOR ").append(infiltratorWins).append('/').append(infiltratorGames).append(')');
+            sb.append("\nKills ").append(kills).append('/').append(killAttempts);
+            sb.append(", reveals ").append(reveals).append('/').append(revealAttempts);
+            for (Game.Role role : ROLES) {
+                if (roleGames[role.ordinal()] > 0) sb.append("\n  ").append(role.name()).append(": ").append(roleGames[role.ordinal()]);
+            }
+            return sb.toString();
+        }
+    }
+
+    private final File recordsFile;
+    private final File indexFile;
+    private final HashMap<String,PlayerStats> players = new HashMap<>();
+    private long covered; // length of the records file included in the totals
+    private int games;
+
+    /**
+     * Opens the store in a folder, creating it if needed.
+     * @param dir - The folder holding the store's files.
+     * @throws IOException - If the files cannot be read or written.
+     */
+    public StatsStore(File dir) throws IOException {
+        dir.mkdirs();
+        recordsFile = new File(dir, "stats.records");
+        indexFile = new File(dir, "stats.index");
+        if (!recordsFile.exists() || recordsFile.length() < RECORDS_HEADER) {
+            try (OutputStream out = new FileOutputStream(recordsFile)) {
+                Buffer header = new Buffer();
+                header.writeInt(RECORDS_MAGIC);
+                header.writeByte(VERSION);
+                out.write(header.bytes, 0, header.size);
+            }
+            indexFile.delete();
+        }
+        covered = RECORDS_HEADER;
+        if (!readIndex()) {
+            // Start the totals again from the first record
+            players.clear();
+            games = 0;
+            covered = RECORDS_HEADER;
+        }
+        if (catchUp()) writeIndex();
+    }
+
+    /**
+     * Adds a finished game to every player's totals.
+     * @param log - The log of the game.
+     * @param game - The game, after the turn it was won.
+     * @throws IllegalArgumentException - If checkWin has not found a winner.
+     * @throws IOException - If the store cannot be written.
+     */
+    public void record(GameLog log, Game game) throws IOException {
+        String winner = game.getWinningSide();
+        if (!"CITIZENS".equals(winner) && !"INFILTRATORS".equals(winner)) {
+            throw new IllegalArgumentException("Game is not over");
+        }
+        boolean citizensWon = winner.equals("CITIZENS");
+        int n = log.getPlayerCount();
+        // Roles held: the starting role, every role a turn was taken in and the final role
+        int[] roles = new int[n];
+        int[] counts = new int[4 * n]; // kill attempts, kills, reveal attempts, reveals
+        Game start = log.createGame();
+        for (int p=0;p<n;p++) {
+            roles[p] |= 1 << start.getPlayerRole(p).ordinal();
+            roles[p] |= 1 << game.getPlayerRole(p).ordinal();
+        }
+        GameLog.Cursor cursor = log.new Cursor();
+        while (cursor.next()) {
+            roles[cursor.player] |= 1 << cursor.role.ordinal();
+            if (cursor.target == Game.NO_TARGET) continue;
+            int kind = isKill(cursor.role) ? 0 : isReveal(cursor.role) ? 2 : -1;
+            if (kind < 0) continue;
+            counts[4 * cursor.player + kind]++;
+            if (cursor.success) counts[4 * cursor.player + kind + 1]++;
+        }
+
+        Buffer body = new Buffer();
+        body.writeVarint(n);
+        for (int p=0;p<n;p++) {
+            boolean citizen = game.getPlayerRole(p).isCitizen;
+            body.writeString(log.getPlayerName(p));
+            body.writeByte((citizen == citizensWon ? 2 : 0) | (citizen ? 1 : 0));
+            body.writeVarint(roles[p]);
+            for (int i=0;i<4;i++) body.writeVarint(counts[4 * p + i]);
+        }
+        Buffer record = new Buffer();
+        record.writeVarint(body.size);
+        record.write(body.bytes, 0, body.size);
+
+        // The record goes first so a failed index write only costs a catch up on the next open
+        try (OutputStream out = new FileOutputStream(recordsFile, true)) {
+            out.write(record.bytes, 0, record.size);
+        }
+        add(body.bytes, 0);
+        covered += record.size;
+        writeIndex();
+    }
+
+    /**
+     * @param name - A player name.
+     * @return - A copy of the player's totals, or null if they have not finished a game.
+     */
+    public PlayerStats getStats(String name) {
+        PlayerStats stats = players.get(name);
+        return stats == null ? null : new PlayerStats(stats);
+    }
+
+    /**
+     * @return - Every player name in the store, sorted.
+     */
+    public ArrayList<String> getPlayerNames() {
+        ArrayList<String> names = new ArrayList<>(players.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    public int getGameCount() { return games; }
+
+    // HELPER METHODS //
+
+    private static boolean isKill(Game.Role role) {
+        return role == Game.Role.INFILTRATOR || role == Game.Role.CITIZEN || role == Game.Role.UNDEAD
+                || role == Game.Role.SPECTRE;
+    }
+
+    private static boolean isReveal(Game.Role role) {
+        return role == Game.Role.SPY || role == Game.Role.BLIND_SPY || role == Game.Role.PSYCHIC
+                || role == Game.Role.GHOST;
+    }
+
+    /**
+     * Adds one game's record to the totals.
+     * @param b - The bytes holding the record body.
+     * @param start - Where the body starts.
+     */
+    private void add(byte[] b, int start) {
+        int[] position = {start};
+        int n = readVarint(b, position);
+        for (int p=0;p<n;p++) {
+            String name = readString(b, position);
+            int flags = b[position[0]++];
+            PlayerStats stats = players.get(name);
+            if (stats == null) {
+                stats = new PlayerStats(name);
+                players.put(name, stats);
+            }
+            stats.games++;
+            boolean won = (flags & 2) != 0;
+            if ((flags & 1) != 0) {
+                stats.citizenGames++;
+                if (won) stats.citizenWins++;
+            } else {
+                stats.infiltratorGames++;
+                if (won) stats.infiltratorWins++;
+            }
+            int roles = readVarint(b, position);
+            for (int r=0;r<ROLES.length;r++) if ((roles & 1 << r) != 0) stats.roleGames[r]++;
+            stats.killAttempts += readVarint(b, position);
+            stats.kills += readVarint(b, position);
+            stats.revealAttempts += readVarint(b, position);
+            stats.reveals += readVarint(b, position);
+        }
+        games++;
+    }
+
+    /**
+     * Loads the totals from the index.
+     * @return - False if there is no usable index.
+     */
+    private boolean readIndex() {
+        if (!indexFile.exists()) return false;
+        try (InputStream in = new FileInputStream(indexFile)) {
+            byte[] b = readAll(in, (int) indexFile.length());
+            int[] position = {0};
+            if (readInt(b, position) != INDEX_MAGIC || b[position[0]++] != VERSION) return false;
+            covered = (long) readInt(b, position) << 32 | (readInt(b, position) & 0xFFFFFFFFL);
+            if (covered < RECORDS_HEADER || covered > recordsFile.length()) return false;
+            games = readVarint(b, position);
+            for (int count=readVarint(b, position);count>0;count--) {
+                PlayerStats stats = new PlayerStats(readString(b, position));
+                stats.games = readVarint(b, position);
+                stats.citizenGames = readVarint(b, position);
+                stats.citizenWins = readVarint(b, position);
+                stats.infiltratorGames = readVarint(b, position);
+                stats.infiltratorWins = readVarint(b, position);
+                for (int r=0;r<ROLES.length;r++) stats.roleGames[r] = readVarint(b, position);
+                stats.killAttempts = readVarint(b, position);
+                stats.kills = readVarint(b, position);
+                stats.revealAttempts = readVarint(b, position);
+                stats.reveals = readVarint(b, position);
+                players.put(stats.name, stats);
+            }
+            return true;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the records written after the ones the totals cover, and cuts off a record that was
+     * only partly written.
+     * @return - Whether the totals changed.
+     * @throws IOException - If the records file cannot be read or written.
+     */
+    private boolean catchUp() throws IOException {
+        if (covered == recordsFile.length()) return false;
+        try (RandomAccessFile file = new RandomAccessFile(recordsFile, "rw")) {
+            byte[] b = new byte[(int) (file.length() - covered)];
+            file.seek(covered);
+            file.readFully(b);
+            int[] position = {0};
+            int end = 0; // end of the last whole record
+            try {
+                while (position[0] < b.length) {
+                    int length = readVarint(b, position);
+                    if (position[0] + length > b.length) break;
+                    add(b, position[0]);
+                    position[0] += length;
+                    end = position[0];
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // A length cut off at the end of the file
+            }
+            covered += end;
+            if (covered < file.length()) file.setLength(covered);
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the index with the current totals. The new index is written to a temporary file
+     * first so a failed write leaves the old one.
+     */
+    private void writeIndex() throws IOException {
+        Buffer index = new Buffer();
+        index.writeInt(INDEX_MAGIC);
+        index.writeByte(VERSION);
+        index.writeInt((int) (covered >>> 32));
+        index.writeInt((int) covered);
+        index.writeVarint(games);
+        index.writeVarint(players.size());
+        for (PlayerStats stats : players.values()) {
+            index.writeString(stats.name);
+            index.writeVarint(stats.games);
+            index.writeVarint(stats.citizenGames);
+            index.writeVarint(stats.citizenWins);
+            index.writeVarint(stats.infiltratorGames);
+            index.writeVarint(stats.infiltratorWins);
+            for (int count : stats.roleGames) index.writeVarint(count);
+            index.writeVarint(stats.killAttempts);
+            index.writeVarint(stats.kills);
+            index.writeVarint(stats.revealAttempts);
+            index.writeVarint(stats.reveals);
+        }
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(index.bytes, 0, index.size);
+        }
+        if (!temp.renameTo(indexFile)) throw new IOException("Could not replace the stats index");
+    }
+
+    private static byte[] readAll(InputStream in, int length) throws IOException {
+        byte[] b = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(b, read, length - read);
+            if (n < 0) throw new IOException("Stats index is shorter than expected");
+            read += n;
+        }
+        return b;
+    }
+
+    private static int readInt(byte[] b, int[] position) {
+        int p = position[0];
+        position[0] += 4;
+        return (b[p] & 0xFF) << 24 | (b[p+1] & 0xFF) << 16 | (b[p+2] & 0xFF) << 8 | (b[p+3] & 0xFF);
+    }
+
+    private static int readVarint(byte[] b, int[] position) {
+        int value = 0;
+        int shift = 0;
+        int v;
+        do {
+            v = b[position[0]++];
+            value |= (v & 0x7F) << shift;
+            shift += 7;
+        } while ((v & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(byte[] b, int[] position) {
+        int length = readVarint(b, position);
+        if (position[0] + length > b.length) throw new IndexOutOfBoundsException();
+        String s = new String(b, position[0], length, UTF_8);
+        position[0] += length;
+        return s;
+    }
+
+    /**
+     * A growable byte array written the same way as GameLog.
+     */
+    private static class Buffer {
+        byte[] bytes = new byte[256];
+        int size;
+
+        void write(byte[] b, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte)b;
+        }
+
+        void writeInt(int v) {
+            ensureCapacity(4);
+            bytes[size++] = (byte)(v >>> 24);
+            bytes[size++] = (byte)(v >>> 16);
+            bytes[size++] = (byte)(v >>> 8);
+            bytes[size++] = (byte)v;
+        }
+
+        void writeVarint(int v) {
+            ensureCapacity(5);
+            while ((v & ~0x7F) != 0) {
+                bytes[size++] = (byte)((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte)v;
+        }
+
+        void writeString(String s) {
+            byte[] b = s.getBytes(UTF_8);
+            writeVarint(b.length);
+            write(b, 0, b.length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.infiltrate.engine;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Ordered queue of pending turns which supports finding the position of a turn and moving it to
+ * any other position in O(log n). It is an implicit treap (a randomly balanced binary tree keyed
+ * by position) whose nodes keep parent pointers, so a node handle can be ranked without
+ * searching.
+ * @param <T> - The type of the queued turns.
+ */
+public class TurnQueue<T> implements Iterable<T> {
+    /**
+     * Handle of a queued turn. It stays valid while the turn is moved around the queue.
+     * @param <T> - The type of the queued turn.
+     */
+    public static class Node<T> {
+        private T value;
+        private Node<T> left, right, parent;
+        private int size = 1; // number of nodes in this subtree
+        private final int priority;
+
+        private Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        public T get() { return value; }
+        public void set(T value) { this.value = value; }
+    }
+
+    private Node<T> root;
+    private int seed = 0x2545F491; // xorshift state for node priorities
+
+    // Results of split, kept as fields so splitting does not allocate
+    private Node<T> splitLeft;
+    private Node<T> splitRight;
+
+    public int size() { return size(root); }
+
+    /**
+     * @return - The turn at the front of the queue.
+     */
+    public T first() {
+        if (root == null) throw new NoSuchElementException();
+        Node<T> n = root;
+        while (n.left != null) n = n.left;
+        return n.value;
+    }
+
+    /**
+     * Adds a turn onto the end of the queue.
+     * @param value - The turn.
+     * @return - The handle of the turn.
+     */
+    public Node<T> addLast(T value) {
+        Node<T> node = new Node<>(value, nextPriority());
+        root = merge(root, node);
+        root.parent = null;
+        return node;
+    }
+
+    /**
+     * Finds the position of a turn in the queue.
+     * @param node - The handle of the turn.
+     * @return - The number of turns in front of it.
+     */
+    public int indexOf(Node<T> node) {
+        int index = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) index += size(node.parent.left) + 1;
+            node = node.parent;
+        }
+        return index;
+    }
+
+    /**
+     * Removes a turn from the queue.
+     * @param node - The handle of the turn, which must not be used again.
+     */
+    public void remove(Node<T> node) {
+        detach(node);
+    }
+
+    /**
+     * Moves a turn to a new position, shifting the turns in between.
+     * @param node - The handle of the turn.
+     * @param index - The position the turn should end up at.
+     */
+    public void move(Node<T> node, int index) {
+        detach(node);
+        split(root, index);
+        Node<T> right = splitRight;
+        root = merge(merge(splitLeft, node), right);
+        root.parent = null;
+    }
+
+    /**
+     * Copies the queue in O(n). The copy has its own nodes so the two queues can change
+     * independently, but the turns themselves are shared until replaced with Node.set.
+     * @return - The copy.
+     */
+    public TurnQueue<T> copy() {
+        TurnQueue<T> copy = new TurnQueue<>();
+        copy.root = copy(root, null);
+        copy.seed = seed;
+        return copy;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<Node<T>> nodes = nodes().iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() { return nodes.hasNext(); }
+
+            @Override
+            public T next() { return nodes.next().value; }
+        };
+    }
+
+    /**
+     * @return - The handles of the queued turns, front of the queue first.
+     */
+    public Iterable<Node<T>> nodes() {
+        return new Iterable<Node<T>>() {
+            @Override
+            public Iterator<Node<T>> iterator() {
+                final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+                for (Node<T> n = root; n != null; n = n.left) stack.push(n);
+                return new Iterator<Node<T>>() {
+                    @Override
+                    public boolean hasNext() { return !stack.isEmpty(); }
+
+                    @Override
+                    public Node<T> next() {
+                        if (stack.isEmpty()) throw new NoSuchElementException();
+                        Node<T> n = stack.pop();
+                        for (Node<T> c = n.right; c != null; c = c.left) stack.push(c);
+                        return n;
+                    }
+                };
+            }
+        };
+    }
+
+    // HELPER METHODS //
+
+    private static <T> Node<T> copy(Node<T> n, Node<T> parent) {
+        if (n == null) return null;
+        Node<T> copy = new Node<>(n.value, n.priority);
+        copy.size = n.size;
+        copy.parent = parent;
+        copy.left = copy(n.left, copy);
+        copy.right = copy(n.right, copy);
+        return copy;
+    }
+
+    /**
+     * Takes a node out of the tree, leaving it as a single node tree.
+     * @param node - The node to take out.
+     */
+    private void detach(Node<T> node) {
+        int index = indexOf(node);
+        split(root, index);
+        Node<T> left = splitLeft;
+        split(splitRight, 1);
+        root = merge(left, splitRight);
+        if (root != null) root.parent = null;
+        node.left = node.right = node.parent = null;
+        node.size = 1;
+    }
+
+    /**
+     * Splits a tree into splitLeft, holding its first count nodes, and splitRight.
+     */
+    private void split(Node<T> n, int count) {
+        if (n == null) {
+            splitLeft = splitRight = null;
+            return;
+        }
+        if (size(n.left) < count) {
+            split(n.right, count - size(n.left) - 1);
+            n.right = splitLeft;
+            update(n);
+            splitLeft = n;
+        } else {
+            split(n.left, count);
+            n.left = splitRight;
+            update(n);
+            splitRight = n;
+        }
+        n.parent = null;
+    }
+
+    private Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        } else {
+            b.left = merge(a, b.left);
+            update(b);
+            return b;
+        }
+    }
+
+    private void update(Node<T> n) {
+        n.size = 1 + size(n.left) + size(n.right);
+        if (n.left != null) n.left.parent = n;
+        if (n.right != null) n.right.parent = n;
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.infiltrate.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays seeded games while logging them and checks that the log survives serialization and
+ * replays to the same state the live game was in after every turn.
+ */
+public class GameLogTest {
+    private static final int PLAYERS = 8;
+
+    @Test
+    public void replayMatchesLiveGame() {
+        for (long seed=0;seed<20;seed++) {
+            GameLog log = TestGames.newLog(PLAYERS, seed);
+            ArrayList<String> states = play(log, new Random(seed));
+            for (int turn=0;turn<states.size();turn++) {
+                assertEquals("seed " + seed + " turn " + turn, states.get(turn), TestGames.describe(log.replay(turn)));
+            }
+        }
+    }
+
+    @Test
+    public void bytesRoundTrip() throws IOException {
+        GameLog log = TestGames.newLog(PLAYERS, 1);
+        play(log, new Random(1));
+        GameLog copy = GameLog.fromByteArray(log.toByteArray());
+        assertEquals(log.getSeed(), copy.getSeed());
+        assertEquals(log.getTurnCount(), copy.getTurnCount());
+        assertEquals(log.getPlayerCount(), copy.getPlayerCount());
+        for (int i=0;i<log.getPlayerCount();i++) assertEquals(log.getPlayerName(i), copy.getPlayerName(i));
+        assertArrayEquals(log.toByteArray(), copy.toByteArray());
+        assertEquals(TestGames.describe(log.replay(log.getTurnCount())), TestGames.describe(copy.replay(copy.getTurnCount())));
+    }
+
+    @Test
+    public void flushedTurnsMatchWrite() throws IOException {
+        GameLog log = TestGames.newLog(PLAYERS, 2);
+        ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        log.flush(appended);
+        Game game = log.createGame();
+        Random random = new Random(2);
+        BitSet legal = new BitSet();
+        boolean over = false;
+        while (!over) {
+            over = TestGames.playTurn(game, log, random, legal);
+            log.flush(appended);
+        }
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        log.write(written);
+        assertArrayEquals(written.toByteArray(), appended.toByteArray());
+        assertEquals(log.getByteCount(), written.size());
+        GameLog read = GameLog.read(new ByteArrayInputStream(appended.toByteArray()));
+        assertEquals(log.getTurnCount(), read.getTurnCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedLogThrows() throws IOException {
+        GameLog log = TestGames.newLog(PLAYERS, 3);
+        play(log, new Random(3));
+        byte[] b = log.toByteArray();
+        GameLog.fromByteArray(Arrays.copyOf(b, b.length - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void olderVersionThrows() throws IOException {
+        byte[] b = TestGames.newLog(PLAYERS, 7).toByteArray();
+        b[4] = 1; // the version byte follows the magic number
+        GameLog.fromByteArray(b);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherBytesThrow() throws IOException {
+        GameLog.fromByteArray("not a log".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void restoredStatePlaysOnLikeTheLiveGame() throws IOException {
+        for (long seed=0;seed<20;seed++) {
+            GameLog log = TestGames.newLog(PLAYERS, seed);
+            Game game = log.createGame();
+            Random random = new Random(seed);
+            BitSet legal = new BitSet();
+            // Save the state part way through, then record a few more turns for restore to replay
+            byte[] state = null;
+            boolean over = false;
+            for (int turn=0;turn<seed+5&&!over;turn++) {
+                if (turn == seed) state = log.saveState(game);
+                over = TestGames.playTurn(game, log, random, legal);
+            }
+            if (state == null) continue;
+            Game restored = GameLog.fromByteArray(log.toByteArray()).restore(state);
+            Random targets = new Random(seed + 1);
+            Random restoredTargets = new Random(seed + 1);
+            for (int turn=0;;turn++) {
+                assertEquals("seed " + seed + " turn " + turn, TestGames.describe(game), TestGames.describe(restored));
+                if (over) break;
+                over = TestGames.playTurn(game, null, targets, legal);
+                assertEquals(over, TestGames.playTurn(restored, null, restoredTargets, legal));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void stateOfAnotherGameThrows() throws IOException {
+        GameLog log = TestGames.newLog(PLAYERS, 4);
+        byte[] state = log.saveState(log.createGame());
+        TestGames.newLog(PLAYERS, 5).restore(state);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedStateThrows() throws IOException {
+        GameLog log = TestGames.newLog(PLAYERS, 6);
+        byte[] state = log.saveState(log.createGame());
+        log.restore(Arrays.copyOf(state, state.length - 1));
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * Plays a game of the log to the end with random targets, recording every turn.
+     * @return - The description of the game before each turn and after the last.
+     */
+    private static ArrayList<String> play(GameLog log, Random random) {
+        ArrayList<String> states = new ArrayList<>();
+        Game game = log.createGame();
+        BitSet legal = new BitSet();
+        boolean over = false;
+        while (!over) {
+            states.add(TestGames.describe(game));
+            over = TestGames.playTurn(game, log, random, legal);
+        }
+        states.add(TestGames.describe(game));
+        return states;
+    }
+}
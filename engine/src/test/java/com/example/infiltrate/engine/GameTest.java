@@ -0,0 +1,278 @@
+package com.example.infiltrate.engine;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays seeded games and checks the state Game keeps up to date incrementally against a recount
+ * from what a player can see.
+ */
+public class GameTest {
+    private static final int GAMES = 20;
+
+    @Test
+    public void censusMatchesRecount() {
+        for (long seed=0;seed<GAMES;seed++) {
+            Game game = TestGames.newGame(players(seed), seed);
+            Random random = new Random(seed);
+            BitSet legal = new BitSet();
+            boolean won = false;
+            while (!won) {
+                won = TestGames.playTurn(game, null, random, legal);
+                int citizens = 0;
+                int infiltrators = 0;
+                int[] roleCounts = new int[Game.Role.values().length];
+                for (int p=0;p<game.getPlayerCount();p++) {
+                    Game.Role role = game.getPlayerRole(p);
+                    roleCounts[role.ordinal()]++;
+                    if (role.isAlive && role.isCitizen) citizens++;
+                    if (role.isAlive && !role.isCitizen) infiltrators++;
+                }
+                String where = "seed " + seed + "\n" + TestGames.describe(game);
+                assertEquals(where, citizens, game.getLivingCount(true));
+                assertEquals(where, infiltrators, game.getLivingCount(false));
+                assertEquals(where, (citizens == 0) != (infiltrators == 0), won);
+                if (won) continue;
+                // balance decides from the role counters, so a living side always has its ordinary role
+                assertTrue(where, citizens == 0 || roleCounts[Game.Role.CITIZEN.ordinal()] > 0);
+                assertTrue(where, infiltrators == 0 || roleCounts[Game.Role.INFILTRATOR.ordinal()] > 0);
+            }
+        }
+    }
+
+    @Test
+    public void spectreTargetsMatchFinishedTurns() {
+        for (long seed=0;seed<GAMES;seed++) {
+            Game game = TestGames.newGame(players(seed), seed);
+            int n = game.getPlayerCount();
+            BitSet[] attackedBy = new BitSet[n];
+            for (int p=0;p<n;p++) attackedBy[p] = new BitSet();
+            Random random = new Random(seed);
+            BitSet legal = new BitSet();
+            boolean won = false;
+            while (!won) {
+                int player = game.getCurrentPlayer();
+                boolean wasAlive = game.getCurrentPlayerRole().isAlive;
+                int target = Simulator.RANDOM_TARGETS.select(game, player, game.getLegalTargets(player, legal), random);
+                game.setSelection(player, target);
+                game.doTurn();
+                // The result names the target the turn finished with, after any WRAITH scramble,
+                // and a player who killed themselves finished with no target
+                Message result = game.getPlayerMessageAt(player, game.getPlayerMessageCount(player) - 1);
+                boolean diedOwnTurn = wasAlive && !game.getPlayerRole(player).isAlive;
+                if (result.target != Game.NO_TARGET && !diedOwnTurn) attackedBy[result.target].set(player);
+                won = game.checkWin();
+                if (!won) game.balance();
+                for (int p=0;p<n;p++) {
+                    // In a fork with no pending targets, a SPECTRE can only target its living attackers
+                    Game fork = game.fork(new GameRandom(seed));
+                    for (int q=0;q<n;q++) fork.setSelection(q, Game.NO_TARGET);
+                    fork.assignRole(p, Game.Role.SPECTRE);
+                    BitSet expected = new BitSet();
+                    for (int a=attackedBy[p].nextSetBit(0);a>=0;a=attackedBy[p].nextSetBit(a+1)) {
+                        if (fork.getPlayerRole(a).isAlive) expected.set(a);
+                    }
+                    assertEquals("seed " + seed + " player " + p, expected, fork.getLegalTargets(p, legal));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cachedLegalTargetsFollowRoles() {
+        for (long seed=0;seed<GAMES;seed++) {
+            Game game = TestGames.newGame(players(seed), seed);
+            Random random = new Random(seed);
+            BitSet legal = new BitSet();
+            boolean won = false;
+            while (!won) {
+                won = TestGames.playTurn(game, null, random, legal);
+                // Most players are served from the cache here, since few turns change a role
+                for (int p=0;p<game.getPlayerCount();p++) {
+                    String where = "seed " + seed + " player " + p + "\n" + TestGames.describe(game);
+                    game.getLegalTargets(p, legal);
+                    if (game.getPlayerRole(p) == Game.Role.SPECTRE) {
+                        legal.andNot(living(game));
+                        assertTrue(where, legal.isEmpty());
+                    } else {
+                        assertEquals(where, legalTargets(game, p), legal);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void doRoundMatchesTurnByTurn() {
+        for (long seed=0;seed<GAMES;seed++) {
+            // Two games dealt from the same seed take the same random decisions
+            Game round = TestGames.newGame(players(seed), seed);
+            Game turns = TestGames.newGame(players(seed), seed);
+            int n = round.getPlayerCount();
+            Random random = new Random(seed);
+            BitSet legal = new BitSet();
+            BitSet successes = new BitSet();
+            BitSet expectedSuccesses = new BitSet();
+            for (int r=0;!turns.checkWin();r++) {
+                String where = "seed " + seed + " round " + r;
+                int[] selections = new int[n];
+                for (int p=0;p<n;p++) {
+                    selections[p] = Simulator.RANDOM_TARGETS.select(round, p, round.getLegalTargets(p, legal), random);
+                    // Some selections are out of range or illegal from the start
+                    if (random.nextInt(4) == 0) selections[p] = random.nextInt(n + 2) - 1;
+                }
+                int[] expected = selections.clone();
+                int played = round.doRound(selections, successes);
+
+                // The same round by hand: every selection first, then one turn each in turn order
+                expectedSuccesses.clear();
+                BitSet playedTurns = new BitSet();
+                for (int p=0;p<n;p++) {
+                    if (expected[p] < 0 || expected[p] >= n) expected[p] = Game.NO_TARGET;
+                    turns.setSelection(p, expected[p]);
+                }
+                int count = 0;
+                while (!playedTurns.get(turns.getCurrentPlayer())) {
+                    int player = turns.getCurrentPlayer();
+                    playedTurns.set(player);
+                    // A PHANTOM or WRAITH earlier in the round may have changed the target
+                    int target = turns.getSelection(player);
+                    if (target != Game.NO_TARGET && !turns.getLegalTargets(player, legal).get(target)) {
+                        expected[player] = Game.NO_TARGET;
+                        turns.setSelection(player, Game.NO_TARGET);
+                    }
+                    if (turns.doTurn()) expectedSuccesses.set(player);
+                    count++;
+                    if (turns.checkWin()) break;
+                    turns.balance();
+                }
+
+                assertEquals(where, count, played);
+                assertArrayEquals(where, expected, selections);
+                assertEquals(where, expectedSuccesses, successes);
+                for (int p=0;p<n;p++) assertEquals(where, playedTurns.get(p), round.hasPlayedThisRound(p));
+                assertEquals(where, TestGames.describe(turns), TestGames.describe(round));
+            }
+        }
+    }
+
+    @Test
+    public void forkPlaysTheSameFuture() {
+        for (long seed=0;seed<GAMES;seed++) {
+            int n = players(seed);
+            GameRandom random = new GameRandom(seed);
+            Game game = new Game(TestGames.names(n), TestGames.minimums(n), TestGames.maximums(n), random);
+            TestGames.advance(game, 5 * n, new Random(seed));
+            Game fork = game.fork(random.copy());
+            assertEquals(TestGames.describe(game), TestGames.describe(fork));
+            Random targets = new Random(seed);
+            Random forkTargets = new Random(seed);
+            BitSet legal = new BitSet();
+            boolean won = false;
+            for (int turn=0;!won;turn++) {
+                won = TestGames.playTurn(game, null, targets, legal);
+                assertEquals(won, TestGames.playTurn(fork, null, forkTargets, legal));
+                assertEquals("seed " + seed + " turn " + turn, TestGames.describe(game), TestGames.describe(fork));
+            }
+        }
+    }
+
+    @Test
+    public void forksAndSourceDoNotChangeEachOther() {
+        for (long seed=0;seed<GAMES;seed++) {
+            // Three games dealt and played alike; only the first is forked and played on
+            int n = players(seed);
+            Game source = TestGames.advance(TestGames.newGame(n, seed), 5 * n, new Random(seed));
+            Game twin = TestGames.advance(TestGames.newGame(n, seed), 5 * n, new Random(seed));
+            Game untouched = TestGames.advance(TestGames.newGame(n, seed), 5 * n, new Random(seed));
+            Game played = source.fork(new GameRandom(seed));
+            Game kept = source.fork(new GameRandom(seed));
+            Game keptTwin = untouched.fork(new GameRandom(seed));
+
+            // Play a fork and a fork of the fork to the end, adding attacks to shared entries
+            Game forkOfFork = played.fork(new GameRandom(seed + 1));
+            TestGames.playToEnd(played, null, new Random(seed + 1));
+            TestGames.playToEnd(forkOfFork, null, new Random(seed + 2));
+
+            // Then the source, which must play out exactly as if it had never been forked
+            BitSet legal = new BitSet();
+            Random sourceTargets = new Random(seed + 3);
+            Random twinTargets = new Random(seed + 3);
+            boolean won = false;
+            for (int turn=0;!won;turn++) {
+                won = TestGames.playTurn(source, null, sourceTargets, legal);
+                TestGames.playTurn(twin, null, twinTargets, legal);
+                assertEquals("seed " + seed + " source turn " + turn, TestGames.describe(twin), TestGames.describe(source));
+            }
+
+            // And a fork left alone while its source played on
+            Random keptTargets = new Random(seed + 4);
+            Random keptTwinTargets = new Random(seed + 4);
+            won = false;
+            for (int turn=0;!won;turn++) {
+                assertEquals("seed " + seed + " fork turn " + turn, TestGames.describe(keptTwin), TestGames.describe(kept));
+                won = TestGames.playTurn(kept, null, keptTargets, legal);
+                TestGames.playTurn(keptTwin, null, keptTwinTargets, legal);
+            }
+        }
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * @return - A player count from 4 to 19, so small and larger games are both covered.
+     */
+    private static int players(long seed) {
+        return 4 + (int) (seed * 7 % 16);
+    }
+
+    /**
+     * The legal targets of a player who is not a SPECTRE, worked out from everyone's roles.
+     */
+    private static BitSet legalTargets(Game game, int player) {
+        BitSet targets = new BitSet();
+        for (int t=0;t<game.getPlayerCount();t++) {
+            Game.Role role = game.getPlayerRole(t);
+            switch (game.getPlayerRole(player)) {
+                case POLTERGEIST:
+                case GHOST:
+                case APPARITION:
+                    targets.set(t);
+                    break;
+                case UNDEAD:
+                case CITIZEN:
+                case SPY:
+                case BLIND_SPY:
+                case PSYCHIC:
+                    targets.set(t, role.isAlive);
+                    break;
+                case SILENCER:
+                case INFILTRATOR:
+                    targets.set(t, role.isAlive && role.isCitizen);
+                    break;
+                case EXORCIST:
+                    targets.set(t, !role.isAlive);
+                    break;
+                case PHANTOM:
+                    targets.set(t, role.isCitizen);
+                    break;
+                case WRAITH:
+                    targets.set(t, !role.isCitizen);
+                    break;
+                default:
+                    throw new IllegalArgumentException("No rule for " + game.getPlayerRole(player));
+            }
+        }
+        return targets;
+    }
+
+    private static BitSet living(Game game) {
+        BitSet living = new BitSet();
+        for (int p=0;p<game.getPlayerCount();p++) living.set(p, game.getPlayerRole(p).isAlive);
+        return living;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.infiltrate.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the worked out role distribution against itself and against the roles RoleAssigner
+ * actually deals.
+ */
+public class RoleDistributionTest {
+    private static final int SAMPLES = 100000;
+
+    @Test
+    public void outcomesSumToOne() {
+        for (int players=2;players<=10;players++) {
+            for (int cap=1;cap<=3;cap++) {
+                int[] maximums = maximums(players, cap);
+                if (!new RoleAssigner(players, minimums(), maximums).isFeasible()) continue;
+                final RoleDistribution distribution = new RoleDistribution(players, minimums(), maximums);
+                final double[] total = new double[1];
+                final double[][] marginals = new double[Game.Role.values().length][players + 1];
+                distribution.forEach(new RoleDistribution.Visitor() {
+                    @Override
+                    public void visit(int[] counts, double probability) {
+                        assertEquals(probability, distribution.getProbability(counts), 1e-12);
+                        total[0] += probability;
+                        for (int r=0;r<counts.length;r++) marginals[r][counts[r]] += probability;
+                    }
+                });
+                assertEquals(1, total[0], 1e-9);
+                for (Game.Role role : Game.Role.values()) {
+                    double[] marginal = distribution.getCountDistribution(role);
+                    assertEquals(1, sum(marginal), 1e-9);
+                    for (int c=0;c<marginal.length;c++) {
+                        assertEquals(c > players ? 0 : marginals[role.ordinal()][c], marginal[c], 1e-9);
+                    }
+                    assertEquals(1, sum(distribution.getPoolDistribution(role)), 1e-9);
+                }
+                assertEquals(1, sum(distribution.getExtraCitizenDistribution()), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void matchesDealtRoles() {
+        assertMatchesDealtRoles(6, maximums(6, 2));
+        int[] maximums = maximums(7, 3);
+        maximums[Game.Role.SPY.ordinal()] = 0;
+        maximums[Game.Role.SILENCER.ordinal()] = 1;
+        assertMatchesDealtRoles(7, maximums);
+    }
+
+    @Test
+    public void impossibleCountsHaveNoChance() {
+        RoleDistribution distribution = new RoleDistribution(6, minimums(), maximums(6, 2));
+        int[] counts = new int[Game.Role.values().length];
+        counts[Game.Role.CITIZEN.ordinal()] = 6;
+        assertEquals(0, distribution.getProbability(counts), 0);
+        counts[Game.Role.CITIZEN.ordinal()] = 2;
+        counts[Game.Role.INFILTRATOR.ordinal()] = 2;
+        counts[Game.Role.GHOST.ordinal()] = 2;
+        assertEquals(0, distribution.getProbability(counts), 0);
+    }
+
+    @Test
+    public void largeLobbiesAreWorkedOut() {
+        RoleDistribution distribution = new RoleDistribution(200, minimums(), maximums(200, 200));
+        for (Game.Role role : Game.Role.values()) {
+            assertEquals(1, sum(distribution.getCountDistribution(role)), 1e-9);
+        }
+        double expected = 0;
+        for (Game.Role role : Game.Role.values()) expected += distribution.getExpectedCount(role);
+        assertEquals(200, expected, 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void impossibleRestrictionsThrow() {
+        new RoleDistribution(6, minimums(), maximums(6, 0));
+    }
+
+    // HELPER METHODS //
+
+    private static int[] minimums() {
+        int[] minimums = new int[Game.Role.values().length];
+        minimums[Game.Role.CITIZEN.ordinal()] = 1;
+        minimums[Game.Role.INFILTRATOR.ordinal()] = 1;
+        return minimums;
+    }
+
+    /**
+     * @return - Living roles capped at cap and enough of every dead role for everyone to die.
+     */
+    private static int[] maximums(int players, int cap) {
+        int[] maximums = new int[Game.Role.values().length];
+        for (Game.Role role : Game.Role.values()) maximums[role.ordinal()] = role.isAlive ? cap : players;
+        maximums[Game.Role.CITIZEN.ordinal()] = Math.max(cap, 1);
+        maximums[Game.Role.INFILTRATOR.ordinal()] = Math.max(cap, 1);
+        return maximums;
+    }
+
+    private static void assertMatchesDealtRoles(int players, int[] maximums) {
+        RoleDistribution distribution = new RoleDistribution(players, minimums(), maximums);
+        RoleAssigner assigner = new RoleAssigner(players, minimums(), maximums);
+        HashMap<String,Integer> dealt = new HashMap<>();
+        Random random = new Random(players);
+        int[] order = new int[players];
+        Game.Role[] roles = new Game.Role[players];
+        for (int i=0;i<SAMPLES;i++) {
+            RolePool[][] pools = {{new RolePool(), new RolePool()}, {new RolePool(), new RolePool()}};
+            assigner.assign(random, pools, order, roles);
+            int[] counts = new int[Game.Role.values().length];
+            for (Game.Role role : roles) counts[role.ordinal()]++;
+            String key = Arrays.toString(counts);
+            Integer before = dealt.get(key);
+            dealt.put(key, before == null ? 1 : before + 1);
+        }
+        final HashMap<String,Double> expected = new HashMap<>();
+        distribution.forEach(new RoleDistribution.Visitor() {
+            @Override
+            public void visit(int[] counts, double probability) {
+                expected.put(Arrays.toString(counts), probability);
+            }
+        });
+        for (String key : dealt.keySet()) assertTrue(key, expected.containsKey(key));
+        for (String key : expected.keySet()) {
+            double p = expected.get(key);
+            Integer count = dealt.get(key);
+            double sigma = Math.sqrt(SAMPLES * p * (1 - p));
+            assertEquals(key, SAMPLES * p, count == null ? 0 : count, 5 * sigma + 1);
+        }
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum;
+    }
+}
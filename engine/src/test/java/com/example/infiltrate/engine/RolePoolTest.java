@@ -0,0 +1,119 @@
+package com.example.infiltrate.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that RolePool draws roles in the same order, in distribution, as the list the Game
+ * constructor used to build with its pick-a-random-restriction loop.
+ */
+public class RolePoolTest {
+    private static final int SAMPLES = 100000;
+
+    @Test
+    public void drawOrderMatchesBaselineLoop() {
+        Game.Role[] roles = {Game.Role.UNDEAD, Game.Role.GHOST, Game.Role.POLTERGEIST, Game.Role.APPARITION};
+        int[] minimums = {1, 1, 0, 0};
+        int[] maximums = {1, 3, 2, 1};
+        HashMap<String,Integer> pooled = new HashMap<>();
+        HashMap<String,Integer> listed = new HashMap<>();
+        Random random = new Random(2);
+        for (int i=0;i<SAMPLES;i++) {
+            RolePool pool = new RolePool();
+            for (int r=0;r<roles.length;r++) {
+                pool.addMinimum(roles[r], minimums[r]);
+                pool.addRemaining(roles[r], maximums[r] - minimums[r]);
+            }
+            StringBuilder sb = new StringBuilder();
+            while (!pool.isEmpty()) sb.append(pool.draw(random).ordinal()).append(' ');
+            count(pooled, sb.toString());
+            count(listed, baseline(roles, minimums, maximums, random));
+        }
+        assertEquals(listed.keySet(), pooled.keySet());
+        for (String order : listed.keySet()) {
+            // Both counts are binomial, so their difference is within a few standard deviations
+            double p = (double) listed.get(order) / SAMPLES;
+            double sigma = Math.sqrt(2 * SAMPLES * p * (1 - p));
+            assertEquals(order, listed.get(order), pooled.get(order), 5 * sigma + 1);
+        }
+    }
+
+    @Test
+    public void returnedRolesComeLastInOrder() {
+        Random random = new Random(3);
+        RolePool pool = new RolePool();
+        pool.addRemaining(Game.Role.SPECTRE, 1);
+        pool.add(Game.Role.WRAITH);
+        pool.add(Game.Role.PHANTOM);
+        pool.add(Game.Role.WRAITH);
+        assertEquals(4, pool.size());
+        assertEquals(Game.Role.SPECTRE, pool.draw(random));
+        assertEquals(Game.Role.WRAITH, pool.draw(random));
+        pool.add(Game.Role.SPECTRE);
+        assertEquals(Game.Role.PHANTOM, pool.draw(random));
+        assertEquals(Game.Role.WRAITH, pool.draw(random));
+        assertEquals(Game.Role.SPECTRE, pool.draw(random));
+        assertTrue(pool.isEmpty());
+    }
+
+    @Test
+    public void copyDrawsIndependently() {
+        RolePool pool = new RolePool();
+        pool.addMinimum(Game.Role.GHOST, 2);
+        pool.addRemaining(Game.Role.UNDEAD, 3);
+        pool.add(Game.Role.APPARITION);
+        RolePool copy = new RolePool(pool);
+        Random random = new Random(4);
+        while (!pool.isEmpty()) pool.draw(random);
+        assertEquals(6, copy.size());
+        assertEquals(2, copy.getMinimumCount(Game.Role.GHOST));
+        assertEquals(3, copy.getRemainingCount(Game.Role.UNDEAD));
+        assertEquals(Game.Role.APPARITION, copy.getReturned(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void drawFromEmptyPoolThrows() {
+        new RolePool().draw(new Random(5));
+    }
+
+    // HELPER METHODS //
+
+    /**
+     * The pool the old constructor built as a list: the minimums shuffled, then a random
+     * restriction picked each time until every role up to its maximum had been added.
+     */
+    private static String baseline(Game.Role[] roles, int[] minimums, int[] maximums, Random random) {
+        ArrayList<Game.Role> list = new ArrayList<>();
+        for (int r=0;r<roles.length;r++) for (int i=0;i<minimums[r];i++) list.add(roles[r]);
+        Collections.shuffle(list, random);
+        ArrayList<Integer> restrictions = new ArrayList<>();
+        int[] left = new int[roles.length];
+        for (int r=0;r<roles.length;r++) {
+            restrictions.add(r);
+            left[r] = maximums[r] - minimums[r];
+        }
+        while (!restrictions.isEmpty()) {
+            int i = random.nextInt(restrictions.size());
+            int r = restrictions.get(i);
+            if (left[r] > 0) {
+                left[r]--;
+                list.add(roles[r]);
+            }
+            if (left[r] == 0) restrictions.remove(i);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Game.Role role : list) sb.append(role.ordinal()).append(' ');
+        return sb.toString();
+    }
+
+    private static void count(HashMap<String,Integer> counts, String key) {
+        Integer before = counts.get(key);
+        counts.put(key, before == null ? 1 : before + 1);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.infiltrate.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records seeded games and checks that reopening the store gives the same totals whether the
+ * index is up to date, missing or behind the records.
+ */
+public class StatsStoreTest {
+    private static final int MAX_PLAYERS = 8;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("stats").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void reopenedStoreHasSameTotals() throws IOException {
+        StatsStore store = new StatsStore(dir);
+        for (long seed=0;seed<10;seed++) record(store, seed);
+        assertEquals(10, store.getGameCount());
+        assertEquals(describe(store), describe(new StatsStore(dir)));
+    }
+
+    @Test
+    public void totalsAddUp() throws IOException {
+        StatsStore store = new StatsStore(dir);
+        ArrayList<String> names = TestGames.names(MAX_PLAYERS);
+        int[] played = new int[MAX_PLAYERS];
+        for (long seed=0;seed<10;seed++) {
+            GameLog log = record(store, seed);
+            for (int p=0;p<log.getPlayerCount();p++) played[names.indexOf(log.getPlayerName(p))]++;
+        }
+        for (int i=0;i<MAX_PLAYERS;i++) {
+            StatsStore.PlayerStats stats = store.getStats(names.get(i));
+            if (played[i] == 0) {
+                assertNull(stats);
+                continue;
+            }
+            assertEquals(played[i], stats.games);
+            assertEquals(stats.games, stats.citizenGames + stats.infiltratorGames);
+            assertTrue(stats.citizenWins <= stats.citizenGames && stats.infiltratorWins <= stats.infiltratorGames);
+            assertTrue(stats.kills <= stats.killAttempts && stats.reveals <= stats.revealAttempts);
+        }
+    }
+
+    @Test
+    public void missingIndexIsRebuilt() throws IOException {
+        StatsStore store = new StatsStore(dir);
+        for (long seed=0;seed<10;seed++) record(store, seed);
+        String expected = describe(store);
+        assertTrue(indexFile().delete());
+        assertEquals(expected, describe(new StatsStore(dir)));
+        assertTrue(indexFile().exists());
+    }
+
+    @Test
+    public void staleIndexCatchesUp() throws IOException {
+        StatsStore store = new StatsStore(dir);
+        for (long seed=0;seed<5;seed++) record(store, seed);
+        byte[] stale = Files.readAllBytes(indexFile().toPath());
+        for (long seed=5;seed<10;seed++) record(store, seed);
+        String expected = describe(store);
+        writeFile(indexFile(), stale, false);
+        assertEquals(expected, describe(new StatsStore(dir)));
+        assertEquals(expected, describe(new StatsStore(dir)));
+    }
+
+    @Test
+    public void partlyWrittenRecordIsCutOff() throws IOException {
+        StatsStore store = new StatsStore(dir);
+        for (long seed=0;seed<5;seed++) record(store, seed);
+        String expected = describe(store);
+        File records = new File(dir, "stats.records");
+        long length = records.length();
+        writeFile(records, new byte[] {40, 8, 3}, true);
+        assertEquals(expected, describe(new StatsStore(dir)));
+        assertEquals(length, records.length());
+        StatsStore reopened = new StatsStore(dir);
+        record(reopened, 5);
+        assertEquals(6, new StatsStore(dir).getGameCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unfinishedGameThrows() throws IOException {
+        GameLog log = newLog(0);
+        new StatsStore(dir).record(log, log.createGame());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gameStillGoingThrows() throws IOException {
+        GameLog log = newLog(0);
+        Game game = log.createGame();
+        assertFalse(game.checkWin());
+        new StatsStore(dir).record(log, game);
+    }
+
+    // HELPER METHODS //
+
+    private File indexFile() { return new File(dir, "stats.index"); }
+
+    /**
+     * @return - The log of a seeded game of 5 to MAX_PLAYERS players.
+     */
+    private static GameLog newLog(long seed) {
+        return TestGames.newLog(5 + new Random(seed).nextInt(MAX_PLAYERS - 4), seed);
+    }
+
+    /**
+     * Plays a seeded game with random targets and records it.
+     * @return - The log of the game.
+     */
+    private static GameLog record(StatsStore store, long seed) throws IOException {
+        GameLog log = newLog(seed);
+        Game game = log.createGame();
+        TestGames.playToEnd(game, log, new Random(seed));
+        store.record(log, game);
+        return log;
+    }
+
+    private static String describe(StatsStore store) {
+        StringBuilder sb = new StringBuilder("games ").append(store.getGameCount());
+        for (String name : store.getPlayerNames()) sb.append('\n').append(store.getStats(name));
+        return sb.toString();
+    }
+
+    private static void writeFile(File file, byte[] b, boolean append) throws IOException {
+        try (OutputStream out = new FileOutputStream(file, append)) {
+            out.write(b);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.infiltrate.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Seeded games for the engine's tests and benchmarks, with role limits like a real lobby's: about
+ * a quarter of the players can be infiltrators, there is at most one of each special living role
+ * and always an EXORCIST, and there are enough dead roles for everyone to die. Turns are played
+ * with random legal targets the same way as GameActivity.nextTurn.
+ */
+final class TestGames {
+    private static final int MAX_TURNS_PER_PLAYER = 1000; // a game longer than this is a bug
+
+    private TestGames() {}
+
+    /**
+     * @param players - The number of players, at least 3.
+     * @return - The names "P0", "P1", ... in player id order.
+     */
+    static ArrayList<String> names(int players) {
+        ArrayList<String> names = new ArrayList<>();
+        for (int i=0;i<players;i++) names.add("P" + i);
+        return names;
+    }
+
+    /**
+     * @param players - The number of players, at least 3.
+     * @return - One CITIZEN, one INFILTRATOR and one EXORCIST, indexed by Role ordinal.
+     */
+    static int[] minimums(int players) {
+        int[] minimums = new int[Game.Role.values().length];
+        minimums[Game.Role.CITIZEN.ordinal()] = 1;
+        minimums[Game.Role.INFILTRATOR.ordinal()] = 1;
+        minimums[Game.Role.EXORCIST.ordinal()] = 1;
+        return minimums;
+    }
+
+    /**
+     * @param players - The number of players, at least 3.
+     * @return - The role limits described in the class comment, indexed by Role ordinal.
+     */
+    static int[] maximums(int players) {
+        int[] maximums = new int[Game.Role.values().length];
+        Arrays.fill(maximums, 1);
+        int infiltrators = Math.max(1, players / 4);
+        maximums[Game.Role.CITIZEN.ordinal()] = players;
+        maximums[Game.Role.INFILTRATOR.ordinal()] = infiltrators;
+        maximums[Game.Role.UNDEAD.ordinal()] = players;
+        // Enough to replace every living infiltrator role on its own
+        maximums[Game.Role.SPECTRE.ordinal()] = infiltrators + 3;
+        return maximums;
+    }
+
+    static Game newGame(int players, long seed) {
+        return new Game(names(players), minimums(players), maximums(players), new GameRandom(seed));
+    }
+
+    static GameLog newLog(int players, long seed) {
+        return new GameLog(seed, names(players), minimums(players), maximums(players));
+    }
+
+    /**
+     * Plays the current player's turn with a random legal target, or none.
+     * @param game - The game.
+     * @param log - Where to record the turn, or null.
+     * @param random - Picks the target.
+     * @param legal - Scratch set for the legal targets.
+     * @return - Whether a side won.
+     */
+    static boolean playTurn(Game game, GameLog log, Random random, BitSet legal) {
+        int player = game.getCurrentPlayer();
+        return playTurn(game, log, Simulator.RANDOM_TARGETS.select(game, player, game.getLegalTargets(player, legal), random));
+    }
+
+    /**
+     * Plays the current player's turn with a given target.
+     * @return - Whether a side won.
+     */
+    static boolean playTurn(Game game, GameLog log, int target) {
+        int player = game.getCurrentPlayer();
+        Game.Role role = game.getCurrentPlayerRole();
+        game.setSelection(player, target);
+        boolean success = game.doTurn();
+        boolean won = game.checkWin();
+        if (log != null) log.recordTurn(player, role, target, success, won);
+        if (!won) game.balance();
+        return won;
+    }
+
+    /**
+     * Plays random turns until a side wins.
+     * @return - The number of turns played.
+     * @throws IllegalStateException - If the game runs far longer than any real game.
+     */
+    static int playToEnd(Game game, GameLog log, Random random) {
+        BitSet legal = new BitSet();
+        int limit = MAX_TURNS_PER_PLAYER * game.getPlayerCount();
+        for (int turns=1;turns<=limit;turns++) if (playTurn(game, log, random, legal)) return turns;
+        throw new IllegalStateException("Game did not finish");
+    }
+
+    /**
+     * Plays random turns which never finish the game, so a game can be given a long history of
+     * kills, attacks and moves. A kill which could leave a side with nobody alive is played
+     * without a target instead.
+     * @return - game.
+     */
+    static Game advance(Game game, int turns, Random random) {
+        BitSet legal = new BitSet();
+        for (int t=0;t<turns;t++) {
+            int player = game.getCurrentPlayer();
+            int target = Simulator.RANDOM_TARGETS.select(game, player, game.getLegalTargets(player, legal), random);
+            if (target != Game.NO_TARGET && kills(game.getCurrentPlayerRole())) {
+                Game.Role victim = game.getPlayerRole(target);
+                if (victim.isAlive && game.getLivingCount(victim.isCitizen) == 1) target = Game.NO_TARGET;
+            }
+            playTurn(game, null, target);
+        }
+        return game;
+    }
+
+    /**
+     * @return - Everything about the game a player or a test can see, as one string.
+     */
+    static String describe(Game game) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Arrays.toString(game.getTurnOrder()));
+        sb.append(" current ").append(game.getCurrentPlayer());
+        sb.append(" winner ").append(game.getWinningSide());
+        BitSet legal = new BitSet();
+        for (int p=0;p<game.getPlayerCount();p++) {
+            sb.append('\n').append(p).append(' ').append(game.getPlayerRole(p));
+            sb.append(" turn ").append(game.getPlayerTurn(p));
+            if (game.isPlayerSilenced(p)) sb.append(" silenced");
+            sb.append(" targets ").append(game.getLegalTargets(p, legal));
+            sb.append(' ').append(game.getPlayerMessage(p).replace('\n', '|'));
+        }
+        return sb.toString();
+    }
+
+    // HELPER METHODS //
+
+    private static boolean kills(Game.Role role) {
+        return role == Game.Role.CITIZEN || role == Game.Role.UNDEAD || role == Game.Role.INFILTRATOR
+                || role == Game.Role.SPECTRE;
+    }
+}
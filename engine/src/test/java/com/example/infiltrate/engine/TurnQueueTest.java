@@ -0,0 +1,91 @@
+package com.example.infiltrate.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks TurnQueue against an ArrayList doing the same operations the slow way.
+ */
+public class TurnQueueTest {
+    @Test
+    public void matchesListUnderRandomOperations() {
+        Random random = new Random(1);
+        TurnQueue<Integer> queue = new TurnQueue<>();
+        ArrayList<Integer> model = new ArrayList<>();
+        ArrayList<TurnQueue.Node<Integer>> nodes = new ArrayList<>(); // indexed by value
+        int next = 0;
+        for (int step=0;step<20000;step++) {
+            int op = random.nextInt(10);
+            if (model.isEmpty() || op < 3) {
+                nodes.add(queue.addLast(next));
+                model.add(next++);
+            } else if (op < 8) {
+                int value = model.get(random.nextInt(model.size()));
+                int index = random.nextInt(model.size());
+                queue.move(nodes.get(value), index);
+                model.remove((Integer) value);
+                model.add(index, value);
+            } else {
+                int value = model.get(random.nextInt(model.size()));
+                queue.remove(nodes.get(value));
+                model.remove((Integer) value);
+            }
+            assertEquals(model.size(), queue.size());
+            if (!model.isEmpty()) {
+                assertEquals(model.get(0), queue.first());
+                int value = model.get(random.nextInt(model.size()));
+                assertEquals(model.indexOf(value), queue.indexOf(nodes.get(value)));
+            }
+            if (step % 500 == 0) assertEquals(model, toList(queue));
+        }
+        assertEquals(model, toList(queue));
+    }
+
+    @Test
+    public void copyChangesIndependently() {
+        TurnQueue<Integer> queue = new TurnQueue<>();
+        ArrayList<TurnQueue.Node<Integer>> nodes = new ArrayList<>();
+        for (int i=0;i<10;i++) nodes.add(queue.addLast(i));
+        TurnQueue<Integer> copy = queue.copy();
+        queue.move(nodes.get(0), 9);
+        queue.remove(nodes.get(5));
+        ArrayList<Integer> expected = new ArrayList<>();
+        for (int i=0;i<10;i++) expected.add(i);
+        assertEquals(expected, toList(copy));
+        for (TurnQueue.Node<Integer> node : copy.nodes()) node.set(node.get() * 10);
+        assertEquals(Integer.valueOf(1), queue.first());
+        assertEquals(Integer.valueOf(90), toList(copy).get(9));
+    }
+
+    @Test
+    public void nodesStayValidWhileMoved() {
+        TurnQueue<String> queue = new TurnQueue<>();
+        TurnQueue.Node<String> a = queue.addLast("a");
+        TurnQueue.Node<String> b = queue.addLast("b");
+        TurnQueue.Node<String> c = queue.addLast("c");
+        queue.move(c, 0);
+        queue.move(a, 1);
+        assertEquals(0, queue.indexOf(c));
+        assertEquals(1, queue.indexOf(a));
+        assertEquals(2, queue.indexOf(b));
+        assertEquals("c", queue.first());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void firstOfEmptyQueueThrows() {
+        new TurnQueue<Integer>().first();
+    }
+
+    // HELPER METHODS //
+
+    private static <T> ArrayList<T> toList(TurnQueue<T> queue) {
+        ArrayList<T> list = new ArrayList<>();
+        for (T value : queue) list.add(value);
+        return list;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.infiltrate.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A non-blocking socket split into the frames of the Protocol. Incoming bytes are collected
+ * until a whole frame has arrived, and outgoing bytes are buffered until the socket can take
+ * them, so neither side ever blocks. Frames are read in place and written straight from the
+ * caller's buffer when the socket has room, so steady traffic does not allocate.
+ *
+ * Reading and flushing belong to the selector thread. Sending may happen on any thread.
+ */
+class Connection {
+    final SocketChannel channel;
+    final SelectionKey key;
+    Object attachment; // state of whoever owns the connection
+
+    private ByteBuffer in = ByteBuffer.allocate(4096); // received bytes, in write mode
+    private ByteBuffer frame = in.duplicate(); // the frame last returned by nextFrame, over in
+    private int readPosition; // start of the first unread frame in in
+    private ByteBuffer out = ByteBuffer.allocate(4096); // bytes not yet written, in write mode. Guarded by this
+    private boolean writeWaiting; // whether the selector is asked to flush out. Guarded by this
+
+    Connection(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+        key.attach(this);
+    }
+
+    /**
+     * Reads whatever the socket has available. Invalidates the frame last returned by nextFrame.
+     * @return - False if the other side closed the connection.
+     * @throws IOException - If the socket failed.
+     */
+    boolean read() throws IOException {
+        if (readPosition > 0) {
+            in.flip();
+            in.position(readPosition);
+            in.compact();
+            readPosition = 0;
+        }
+        if (!in.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+            in.flip();
+            bigger.put(in);
+            in = bigger;
+            frame = in.duplicate();
+        }
+        return channel.read(in) >= 0;
+    }
+
+    /**
+     * Takes the next complete frame out of the received bytes. The frame shares the connection's
+     * buffer, so it is only valid until the next call to nextFrame or read.
+     * @return - The frame without its length, positioned at the frame type, or null if no
+     *           complete frame has arrived yet.
+     * @throws IOException - If the frame is longer than Protocol.MAX_FRAME.
+     */
+    ByteBuffer nextFrame() throws IOException {
+        int available = in.position() - readPosition;
+        if (available < 4) return null;
+        int length = in.getInt(readPosition);
+        if (length < 1 || length > Protocol.MAX_FRAME) throw new IOException("Bad frame length " + length);
+        if (available < 4 + length) return null;
+        frame.limit(readPosition + 4 + length);
+        frame.position(readPosition + 4);
+        readPosition += 4 + length;
+        return frame;
+    }
+
+    /**
+     * Sends a frame, buffering whatever the socket cannot take straight away. The frame's
+     * position is left unchanged so the same frame can be sent on other connections.
+     * @param bytes - The frame, including its length.
+     * @return - True if bytes were left over and watchWrites must now be called on the selector
+     *           thread.
+     * @throws IOException - If the socket failed.
+     */
+    synchronized boolean send(ByteBuffer bytes) throws IOException {
+        int start = bytes.position();
+        try {
+            if (out.position() == 0) channel.write(bytes);
+            if (!bytes.hasRemaining()) return false;
+            if (out.remaining() < bytes.remaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.remaining()));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            out.put(bytes);
+            if (writeWaiting) return false;
+            writeWaiting = true;
+            return true;
+        } finally {
+            bytes.position(start);
+        }
+    }
+
+    /**
+     * Asks the selector to call flush once the socket can take more bytes. Selector thread only.
+     */
+    void watchWrites() {
+        if (key.isValid()) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Writes buffered bytes until they are all sent or the socket is full. Write interest is only
+     * registered while bytes are waiting. Selector thread only.
+     * @throws IOException - If the socket failed.
+     */
+    synchronized void flush() throws IOException {
+        out.flip();
+        channel.write(out);
+        out.compact();
+        if (out.position() > 0) return;
+        writeWaiting = false;
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
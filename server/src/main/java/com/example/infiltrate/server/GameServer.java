@@ -0,0 +1,279 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.Game;
+import com.example.infiltrate.engine.RoleAssigner;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hosts games for players on other devices. One thread multiplexes every connection with a
+ * Selector, so an idle player costs a socket and a few buffers rather than a thread. The games
+ * themselves are spread over a fixed set of GameShards: the selector thread decodes frames and
+ * posts them to the shard that owns the game, and the shard posts frames back to be sent. Lobbies
+ * and connections are only touched by the selector thread, and each game only by its shard.
+ * Bots search on a pool of their own with half as many threads as there are shards, so a burst
+ * of bot moves neither starves the shards nor competes with anything else on the common pool.
+ */
+public class GameServer implements Runnable {
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final GameShard[] shards;
+    private final ForkJoinPool botPool; // runs every BotPlayer search
+    private final HashMap<String, HostedGame> lobbies = new HashMap<>(); // games not yet started
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // for the selector thread
+    private int nextShard;
+    private volatile boolean running = true;
+
+    /**
+     * @param address - The address to listen on. Port 0 picks a free port.
+     * @throws IOException - If the address cannot be bound.
+     */
+    public GameServer(InetSocketAddress address) throws IOException {
+        this(address, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param address - The address to listen on. Port 0 picks a free port.
+     * @param shardCount - The number of threads to run games on.
+     * @throws IOException - If the address cannot be bound.
+     */
+    public GameServer(InetSocketAddress address, int shardCount) throws IOException {
+        shards = new GameShard[shardCount];
+        for (int i=0;i<shardCount;i++) shards[i] = new GameShard("game-shard-" + i);
+        botPool = new ForkJoinPool(Math.max(1, shardCount / 2));
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return - One line per shard with its queue depth, tasks processed and task latency.
+     */
+    public String getShardStats() {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0;i<shards.length;i++) sb.append("game-shard-").append(i).append(' ').append(shards[i]).append('\n');
+        return sb.toString();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) connection.flush();
+                        if (key.isReadable()) read(connection);
+                    } catch (IOException | RuntimeException e) {
+                        // A broken or misbehaving client only loses its own connection
+                        drop(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (GameShard shard : shards) shard.shutdown();
+            botPool.shutdownNow();
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // Closing anyway
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Stops the server. Safe to call from any thread.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    // SHARD CALLBACKS //
+
+    /**
+     * @return - The pool bots search on, which may be used from any thread.
+     */
+    ForkJoinPool getBotPool() { return botPool; }
+
+    /**
+     * Sends a frame from any thread. The frame is copied if the socket cannot take it all, so the
+     * caller may reuse it straight away.
+     * @param connection - The connection to send on.
+     * @param frame - The frame, including its length.
+     */
+    void send(Connection connection, ByteBuffer frame) {
+        try {
+            if (connection.send(frame)) execute(connection::watchWrites);
+        } catch (IOException e) {
+            execute(() -> drop(connection));
+        }
+    }
+
+    /**
+     * Detaches a connection from its game from any thread, so the player can JOIN again.
+     * @param connection - The player's connection, whose game is over or refused them.
+     */
+    void unseat(Connection connection) {
+        execute(() -> connection.attachment = null);
+    }
+
+    /**
+     * Stops new players joining a game, from any thread.
+     * @param game - The game, which has started or been abandoned.
+     */
+    void closeLobby(HostedGame game) {
+        execute(() -> lobbies.remove(game.lobby, game));
+    }
+
+    // HELPER METHODS //
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            new Connection(channel, channel.register(selector, SelectionKey.OP_READ));
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        boolean open = connection.read();
+        ByteBuffer frame;
+        while (connection.key.isValid() && (frame = connection.nextFrame()) != null) handle(connection, frame);
+        if (!open) drop(connection);
+    }
+
+    private void handle(Connection connection, ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        HostedGame.Seat seat = (HostedGame.Seat) connection.attachment;
+        switch (type) {
+            case Protocol.JOIN:
+                if (seat != null) {
+                    send(connection, Protocol.error("Already in a game"));
+                    return;
+                }
+                join(connection, frame);
+                return;
+            case Protocol.SELECT:
+                if (seat == null) {
+                    send(connection, Protocol.error("Not in a game"));
+                    return;
+                }
+                int target = frame.getInt();
+                seat.game.post(() -> seat.game.select(seat, target));
+                return;
+            default:
+                send(connection, Protocol.error("Unknown frame type " + type));
+        }
+    }
+
+    private void join(Connection connection, ByteBuffer frame) throws IOException {
+        String lobby = Protocol.getString(frame);
+        String name = Protocol.getString(frame);
+        int playerCount = frame.getInt();
+        int roleCount = frame.getInt();
+        if (playerCount < 1 || roleCount != Game.Role.values().length) {
+            send(connection, Protocol.error("Bad game settings"));
+            return;
+        }
+        int[] minimums = new int[roleCount];
+        int[] maximums = new int[roleCount];
+        for (int i=0;i<roleCount;i++) {
+            minimums[i] = frame.getInt();
+            maximums[i] = frame.getInt();
+        }
+        boolean rounds = frame.get() != 0;
+        int botCount = frame.getInt();
+        if (botCount < 0 || botCount >= playerCount) {
+            send(connection, Protocol.error("Bad game settings"));
+            return;
+        }
+        RoleAssigner assigner = new RoleAssigner(playerCount, minimums, maximums);
+        if (!assigner.isFeasible()) {
+            send(connection, Protocol.error(assigner.getProblem()));
+            return;
+        }
+
+        HostedGame game = lobbies.get(lobby);
+        if (game == null) {
+            // Lobbies are dealt to shards in turn so each shard hosts a similar number of games
+            game = new HostedGame(this, shards[nextShard], lobby, playerCount, minimums, maximums, rounds, botCount);
+            nextShard = (nextShard + 1) % shards.length;
+            lobbies.put(lobby, game);
+        } else if (!game.hasSettings(playerCount, minimums, maximums, rounds, botCount)) {
+            send(connection, Protocol.error("Lobby has different game settings"));
+            return;
+        }
+        // Seated now rather than once the shard has handled the join, so a SELECT sent straight
+        // after JOIN is posted behind it instead of being refused
+        HostedGame.Seat seat = new HostedGame.Seat(game, connection);
+        connection.attachment = seat;
+        seat.game.post(() -> seat.game.join(seat, name));
+    }
+
+    private void drop(Connection connection) {
+        connection.close();
+        HostedGame.Seat seat = (HostedGame.Seat) connection.attachment;
+        if (seat == null) return;
+        connection.attachment = null;
+        seat.game.post(() -> seat.game.disconnect(seat));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        GameServer server = new GameServer(new InetSocketAddress(port));
+        System.out.println("Listening on port " + server.getPort());
+        Thread selectorThread = new Thread(server, "game-server");
+        selectorThread.start();
+        while (selectorThread.isAlive()) {
+            try {
+                selectorThread.join(60_000);
+            } catch (InterruptedException e) {
+                break;
+            }
+            System.out.print(server.getShardStats());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.infiltrate.server;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single thread which owns a share of the server's games. Every task for a game is posted to
+ * the game's shard, so a game is only ever touched by one thread and its turns need no locks,
+ * while games on different shards advance in parallel.
+ */
+class GameShard {
+    private static final Logger LOG = Logger.getLogger(GameShard.class.getName());
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong processed = new AtomicLong(); // tasks finished
+    private final AtomicLong totalLatency = new AtomicLong(); // nanoseconds from post to finish
+    private final AtomicLong maxLatency = new AtomicLong(); // nanoseconds from post to finish
+
+    /**
+     * @param name - The name of the shard's thread.
+     */
+    GameShard(String name) {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Queues a task behind every task already posted to this shard. If the task throws, the
+     * failure is logged and its game is closed, since the game may have been left half updated,
+     * while the other games on this shard carry on.
+     * @param game - The game the task is for, which this shard owns.
+     * @param task - The task, which may only touch that game.
+     */
+    void post(HostedGame game, Runnable task) {
+        long posted = System.nanoTime();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, "Task failed in game " + game.lobby + ", closing it", e);
+                try {
+                    game.fail();
+                } catch (RuntimeException closeFailure) {
+                    LOG.log(Level.SEVERE, "Could not close game " + game.lobby, closeFailure);
+                }
+            }
+            long latency = System.nanoTime() - posted;
+            processed.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            long max;
+            while ((max = maxLatency.get()) < latency && !maxLatency.compareAndSet(max, latency));
+        });
+    }
+
+    /**
+     * @return - The number of tasks waiting to run.
+     */
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return - The mean time from posting a task to finishing it, in nanoseconds.
+     */
+    long getMeanLatency() {
+        long n = processed.get();
+        return n == 0 ? 0 : totalLatency.get() / n;
+    }
+
+    /**
+     * @return - The longest time from posting a task to finishing it, in nanoseconds.
+     */
+    long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth=%d processed=%d meanLatency=%.1fus maxLatency=%.1fus",
+                getQueueDepth(), getProcessed(), getMeanLatency() / 1e3, getMaxLatency() / 1e3);
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.BotPlayer;
+import com.example.infiltrate.engine.Game;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * A lobby on the server which becomes a game once every seat is taken. Each player has their own
+ * connection, and after every turn each player is sent whatever changed in their own view of the
+ * game: their role and messages and, on their turn, the targets they can select.
+ *
+ * Bot seats, and the seats of players who have disconnected, are played by a BotPlayer. Its
+ * search runs on the server's bot pool so the shard is never blocked, and the target it chooses
+ * is posted back to the shard. A game nobody is connected to any more is left alone.
+ *
+ * In round mode every player selects at the start of a round instead, and once every player has
+ * selected the round is resolved in one go with Game.doRound, so views are only worked out and
+ * sent once per round.
+ *
+ * A hosted game belongs to one GameShard and, apart from its final fields, is only touched by
+ * tasks posted to that shard with post. A task which throws closes the game. Frames are handed
+ * back to the server's selector thread to be sent.
+ */
+class HostedGame {
+    private static final long BOT_BUDGET_MILLIS = 100; // search time of each bot move
+
+    final String lobby;
+    private final GameShard shard;
+    private final GameServer server;
+    private final int playerCount;
+    private final boolean rounds; // whether the game is played in rounds
+    private final int[] minimums; // indexed by Role ordinal
+    private final int[] maximums; // indexed by Role ordinal
+    private final int botCount; // seats played by bots from the start
+    private final ArrayList<String> names = new ArrayList<>(); // indexed by player id
+    private final ArrayList<Connection> connections = new ArrayList<>(); // null for bots and once disconnected
+    private final ArrayList<BotPlayer> bots = new ArrayList<>(); // indexed by player id, null until needed
+    private final Random botSeeds = new Random();
+    private final BitSet targets = new BitSet();
+    private final ArrayList<ViewEncoder> views = new ArrayList<>(); // indexed by player id
+    private ByteBuffer frame = ByteBuffer.allocate(4096); // reused for every VIEW
+    private Game game; // null until every seat is taken
+    private int[] selections; // selection of each player id this round, in round mode
+    private final BitSet selected = new BitSet(); // ids of players who selected this round
+    private int unselected; // players who have not selected this round
+    private int stamp; // counts the points where players select, so late bot results are ignored
+    private boolean over;
+    private int turns;
+
+    /**
+     * A player's seat, attached to their connection by the selector thread as soon as they send
+     * JOIN. Their later frames are posted behind the join, so they find the seat taken.
+     */
+    static class Seat {
+        final HostedGame game;
+        final Connection connection;
+        int player = -1; // set by join on the shard, and left -1 if the join is refused
+
+        Seat(HostedGame game, Connection connection) {
+            this.game = game;
+            this.connection = connection;
+        }
+    }
+
+    HostedGame(GameServer server, GameShard shard, String lobby, int playerCount, int[] minimums,
+               int[] maximums, boolean rounds, int botCount) {
+        this.server = server;
+        this.rounds = rounds;
+        this.shard = shard;
+        this.lobby = lobby;
+        this.playerCount = playerCount;
+        this.minimums = minimums.clone();
+        this.maximums = maximums.clone();
+        this.botCount = botCount;
+        for (int i=1;i<=botCount;i++) {
+            names.add("Bot " + i);
+            connections.add(null);
+            views.add(new ViewEncoder());
+        }
+    }
+
+    int getTurns() { return turns; }
+
+    /**
+     * Queues a task for this game on its shard, from any thread. See GameShard.post.
+     * @param task - The task.
+     */
+    void post(Runnable task) {
+        shard.post(this, task);
+    }
+
+    /**
+     * @return - Whether a JOIN with these settings is for this game. Only reads the settings,
+     *           which never change, so it can be called from any thread.
+     */
+    boolean hasSettings(int playerCount, int[] minimums, int[] maximums, boolean rounds, int botCount) {
+        return this.playerCount == playerCount && Arrays.equals(this.minimums, minimums)
+                && Arrays.equals(this.maximums, maximums) && this.rounds == rounds && this.botCount == botCount;
+    }
+
+    /**
+     * Seats a player and starts the game if they took the last seat. Once the game starts the
+     * lobby is given up so the name can be used for another game. A refused player is unseated
+     * so they can JOIN again.
+     * @param seat - The seat attached to the player's connection, not yet given a player id.
+     * @param name - The player's name, which must not be taken.
+     */
+    void join(Seat seat, String name) {
+        if (game != null || over) {
+            refuse(seat, "Game already started");
+            return;
+        }
+        if (names.contains(name)) {
+            refuse(seat, "Name already taken");
+            return;
+        }
+        seat.player = names.size();
+        names.add(name);
+        connections.add(seat.connection);
+        views.add(new ViewEncoder());
+        if (names.size() < playerCount) return;
+
+        server.closeLobby(this);
+        try {
+            game = new Game(names, minimums, maximums);
+        } catch (IllegalArgumentException e) {
+            // The role restrictions cannot be dealt to this many players, see RoleAssigner
+            end(Protocol.error(e.getMessage()));
+            return;
+        }
+        for (int i=0;i<playerCount;i++) {
+            Protocol.FrameBuilder start = new Protocol.FrameBuilder(Protocol.START)
+                    .putInt(i).putInt(playerCount);
+            for (String n : names) start.putString(n);
+            send(i, start.build());
+        }
+        if (rounds) {
+            selections = new int[playerCount];
+            startRound();
+        } else {
+            nextTurn();
+        }
+    }
+
+    /**
+     * Plays a player's turn with the target they selected or, in round mode, records it for the
+     * round and plays the round if they were the last to select.
+     * @param player - The id of the player.
+     * @param target - The id of the target, or Game.NO_TARGET.
+     */
+    void select(Seat seat, int target) {
+        int player = seat.player;
+        if (player < 0) {
+            server.send(seat.connection, Protocol.error("Not in a game"));
+            return;
+        }
+        if (game == null || over || (rounds ? selected.get(player) : game.getCurrentPlayer() != player)) {
+            send(player, Protocol.error("Not your turn"));
+            return;
+        }
+        if (target != Game.NO_TARGET && (target < 0 || !game.getLegalTargets(player, targets).get(target))) {
+            send(player, Protocol.error("Illegal target"));
+            return;
+        }
+        choose(player, target);
+    }
+
+    /**
+     * Gives up a player's seat. A bot plays it from now on.
+     * @param seat - The seat of the player, who may have been refused.
+     */
+    void disconnect(Seat seat) {
+        int player = seat.player;
+        if (player < 0 || connections.set(player, null) == null) return;
+        if (game == null && isAbandoned()) {
+            over = true;
+            server.closeLobby(this);
+        }
+        if (game == null || over || isAbandoned()) return;
+        if (rounds ? !selected.get(player) : game.getCurrentPlayer() == player) think(player);
+    }
+
+    /**
+     * Closes the game after one of its tasks threw, since its state may be half updated. Every
+     * connected player is told and unseated. Called on the shard by GameShard.post.
+     */
+    void fail() {
+        if (over) return;
+        if (game == null) server.closeLobby(this);
+        end(Protocol.error("Game closed after a server error"));
+    }
+
+    // HELPER METHODS //
+
+    private void refuse(Seat seat, String reason) {
+        // Unseated before the error is sent, so a JOIN sent in reply is not refused as well
+        server.unseat(seat.connection);
+        server.send(seat.connection, Protocol.error(reason));
+    }
+
+    private boolean isAbandoned() {
+        for (Connection c : connections) if (c != null) return false;
+        return true;
+    }
+
+    /**
+     * Plays or records a legal selection, then moves the game on to the next selection.
+     */
+    private void choose(int player, int target) {
+        if (rounds) {
+            selections[player] = target;
+            selected.set(player);
+            if (--unselected == 0) playRound();
+            return;
+        }
+        playTurn(player, target);
+        if (!over) nextTurn();
+    }
+
+    /**
+     * Sends everyone their view for the current player's turn, and starts a bot search if the
+     * current player has no connection.
+     */
+    private void nextTurn() {
+        stamp++;
+        if (isAbandoned()) return;
+        sendViews();
+        if (connections.get(game.getCurrentPlayer()) == null) think(game.getCurrentPlayer());
+    }
+
+    /**
+     * Starts a bot search for a player. The result comes back through botSelected on the shard.
+     */
+    private void think(int player) {
+        while (bots.size() <= player) bots.add(null);
+        if (bots.get(player) == null) bots.set(player, new BotPlayer(BOT_BUDGET_MILLIS, botSeeds.nextLong()));
+        int searchStamp = stamp;
+        bots.get(player).selectLater(game, player, server.getBotPool(),
+                (p, target) -> post(() -> botSelected(p, target, searchStamp)));
+    }
+
+    /**
+     * Uses a bot's target, unless the game moved on while it was searching.
+     */
+    private void botSelected(int player, int target, int searchStamp) {
+        if (over || searchStamp != stamp || (rounds && selected.get(player))) return;
+        choose(player, target);
+    }
+
+    /**
+     * Plays a turn the same way as GameActivity.nextTurn: setSelection, doTurn, checkWin then
+     * balance.
+     */
+    private void playTurn(int player, int target) {
+        game.setSelection(player, target);
+        game.doTurn();
+        turns++;
+        if (game.checkWin()) {
+            end(new Protocol.FrameBuilder(Protocol.GAME_OVER).putString(game.getWinningSide()).build());
+            return;
+        }
+        game.balance();
+    }
+
+    /**
+     * Starts a round in round mode, with a bot search for every player without a connection.
+     */
+    private void startRound() {
+        stamp++;
+        if (isAbandoned()) return;
+        Arrays.fill(selections, Game.NO_TARGET);
+        selected.clear();
+        unselected = playerCount;
+        sendViews();
+        for (int p=0;p<playerCount;p++) if (connections.get(p) == null) think(p);
+    }
+
+    private void playRound() {
+        turns += game.doRound(selections, null);
+        if (game.checkWin()) {
+            end(new Protocol.FrameBuilder(Protocol.GAME_OVER).putString(game.getWinningSide()).build());
+            return;
+        }
+        startRound();
+    }
+
+    /**
+     * Sends each connected player whatever changed in their view, and the players who are to
+     * select (the current player, or everyone in round mode) their targets.
+     */
+    private void sendViews() {
+        int current = rounds ? -1 : game.getCurrentPlayer();
+        for (int p=0;p<playerCount;p++) {
+            if (connections.get(p) == null) continue;
+            int length = ViewEncoder.maxFrameLength(game.getPlayerMessageCount(p), playerCount);
+            if (frame.capacity() < length) frame = ByteBuffer.allocate(length * 2);
+            frame.clear();
+            if (!views.get(p).encode(game, p, rounds || p == current, targets, frame)) continue;
+            frame.flip();
+            send(p, frame);
+        }
+    }
+
+    private void end(ByteBuffer frame) {
+        over = true;
+        for (int p=0;p<connections.size();p++) {
+            send(p, frame);
+            if (connections.get(p) != null) server.unseat(connections.get(p));
+        }
+    }
+
+    private void send(int player, ByteBuffer frame) {
+        Connection connection = connections.get(player);
+        if (connection != null) server.send(connection, frame);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.Game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Plays many games at once against a GameServer over localhost with ScriptedClients, all driven
+ * by a single selector thread, and reports the turns per second the server sustained.
+ *
+ * Usage: LoadTest [games] [players per game] [turns|rounds] [bots per game] [port]. With no
+ * port a server is started in-process. Bot seats are played by the server, so their moves take
+ * the bots' search time and are not counted as selections.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        boolean rounds = args.length > 2 && args[2].equals("rounds");
+        int bots = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        GameServer server = null;
+        Thread serverThread = null;
+        int port;
+        if (args.length > 4) {
+            port = Integer.parseInt(args[4]);
+        } else {
+            server = new GameServer(new InetSocketAddress("127.0.0.1", 0));
+            port = server.getPort();
+            serverThread = new Thread(server, "game-server");
+            serverThread.start();
+        }
+
+        int[] minimums = new int[Game.Role.values().length];
+        int[] maximums = new int[Game.Role.values().length];
+        for (Game.Role role : Game.Role.values()) {
+            minimums[role.ordinal()] = role == Game.Role.CITIZEN || role == Game.Role.INFILTRATOR ? 1 : 0;
+            maximums[role.ordinal()] = players;
+        }
+
+        Selector selector = Selector.open();
+        Random random = new Random(1);
+        ArrayList<ScriptedClient> clients = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int g=0;g<games;g++) {
+            for (int p=bots;p<players;p++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Connection connection = new Connection(channel, channel.register(selector, SelectionKey.OP_READ));
+                clients.add(new ScriptedClient(connection, "load-" + g, "Player " + p, players,
+                        minimums, maximums, rounds, bots, new Random(random.nextLong())));
+            }
+        }
+
+        int done = 0;
+        while (done < clients.size()) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) continue;
+                Connection connection = (Connection) key.attachment();
+                ScriptedClient client = (ScriptedClient) connection.attachment;
+                if (key.isWritable()) connection.flush();
+                if (!key.isReadable()) continue;
+                boolean open = connection.read();
+                ByteBuffer frame;
+                while (!client.isDone() && (frame = connection.nextFrame()) != null) client.handle(frame);
+                if (client.isDone() || !open) {
+                    if (!client.isDone()) throw new IOException("Server closed a connection mid-game");
+                    connection.close();
+                    done++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long selections = 0;
+        int errors = 0;
+        for (ScriptedClient client : clients) {
+            selections += client.getSelections();
+            if (client.getError() != null) errors++;
+        }
+        System.out.printf("%d games of %d players: %d selections in %.2fs (%.0f selections/s), %d errors%n",
+                games, players, selections, elapsed / 1e9, selections / (elapsed / 1e9), errors);
+
+        selector.close();
+        if (server != null) {
+            System.out.print(server.getShardStats());
+            server.close();
+            serverThread.join();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.Game;
+import com.example.infiltrate.engine.Message;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A client's copy of its own view of a game, kept up to date by applying VIEW frames. Message
+ * events are stored as plain ints so applying a frame does not allocate once the arrays have
+ * grown; Message objects are only made when the view is rendered.
+ */
+public class PlayerView {
+    private static final Game.Role[] ROLES = Game.Role.values();
+    private static final Message.Type[] MESSAGE_TYPES = Message.Type.values();
+
+    private Game.Role role; // null until the first VIEW
+    private boolean silenced;
+    private boolean yourTurn;
+    private int messageCount;
+    private int[] messageTypes = new int[8]; // Message.Type ordinals
+    private int[] messageTargets = new int[8]; // player ids, or Game.NO_TARGET
+    private int[] messageRoles = new int[8]; // Role ordinals for REVEAL, otherwise -1
+    private final BitSet targets = new BitSet(); // legal targets as of the last turn
+
+    public Game.Role getRole() { return role; }
+    public boolean isSilenced() { return silenced; }
+    public int getMessageCount() { return messageCount; }
+
+    /**
+     * @return - Whether the last VIEW started this player's turn. Cleared by endTurn.
+     */
+    public boolean isYourTurn() { return yourTurn; }
+
+    /**
+     * Notes that this player's selection was sent.
+     */
+    public void endTurn() { yourTurn = false; }
+
+    /**
+     * @return - The legal targets, which are only up to date while it is this player's turn.
+     */
+    public BitSet getTargets() { return targets; }
+
+    /**
+     * Applies the changes in a VIEW frame.
+     * @param frame - The frame, positioned after the frame type.
+     */
+    public void apply(ByteBuffer frame) {
+        int flags = frame.get();
+        silenced = (flags & Protocol.VIEW_SILENCED) != 0;
+        yourTurn = (flags & Protocol.VIEW_YOUR_TURN) != 0;
+        if ((flags & Protocol.VIEW_ROLE) != 0) role = ROLES[Protocol.getVarint(frame)];
+        if ((flags & Protocol.VIEW_CLEAR) != 0) messageCount = 0;
+        if ((flags & Protocol.VIEW_MESSAGES) != 0) {
+            int before = Protocol.getVarint(frame);
+            ensureCapacity(messageCount + before);
+            System.arraycopy(messageTypes, 0, messageTypes, before, messageCount);
+            System.arraycopy(messageTargets, 0, messageTargets, before, messageCount);
+            System.arraycopy(messageRoles, 0, messageRoles, before, messageCount);
+            for (int i=0;i<before;i++) readMessage(frame, i);
+            messageCount += before;
+            int after = Protocol.getVarint(frame);
+            ensureCapacity(messageCount + after);
+            for (int i=0;i<after;i++) readMessage(frame, messageCount + i);
+            messageCount += after;
+        }
+        if (yourTurn) {
+            int previous = 0;
+            for (int n=Protocol.getVarint(frame);n>0;n--) {
+                previous += Protocol.getVarint(frame);
+                targets.flip(previous);
+            }
+        }
+    }
+
+    /**
+     * @param index - The index of the message.
+     * @return - The message.
+     */
+    public Message getMessage(int index) {
+        return Message.of(MESSAGE_TYPES[messageTypes[index]], messageTargets[index],
+                messageRoles[index] < 0 ? null : ROLES[messageRoles[index]]);
+    }
+
+    /**
+     * Renders the view the same way as Game.getPlayerMessage.
+     * @param playerNames - The names of the players, indexed by player id.
+     * @return - The role description and messages.
+     */
+    public String render(List<String> playerNames) {
+        StringBuilder sb = new StringBuilder();
+        if (silenced) sb.append(role.description.replace("Can speak","Cannot speak"));
+        else sb.append(role.description);
+        for (int i=0;i<messageCount;i++) getMessage(i).render(sb, playerNames);
+        return sb.toString();
+    }
+
+    // HELPER METHODS //
+
+    private void readMessage(ByteBuffer frame, int index) {
+        int type = frame.get();
+        messageTypes[index] = type;
+        messageTargets[index] = Game.NO_TARGET;
+        messageRoles[index] = -1;
+        if (type == Message.Type.SUCCESS.ordinal() || type == Message.Type.FAILURE.ordinal()) {
+            messageTargets[index] = Protocol.getVarint(frame);
+        } else if (type == Message.Type.REVEAL.ordinal()) {
+            messageTargets[index] = Protocol.getVarint(frame);
+            messageRoles[index] = frame.get();
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= messageTypes.length) return;
+        int capacity = Math.max(count, messageTypes.length * 2);
+        messageTypes = Arrays.copyOf(messageTypes, capacity);
+        messageTargets = Arrays.copyOf(messageTargets, capacity);
+        messageRoles = Arrays.copyOf(messageRoles, capacity);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.infiltrate.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Frame types and encoding helpers of the game server's wire protocol. Every frame is a 4 byte
+ * big-endian length followed by that many bytes: a one byte frame type and then its fields.
+ * Strings are a 4 byte length followed by UTF-8 bytes. Varints are unsigned LEB128: 7 bits per
+ * byte, low bits first, with the top bit set on every byte but the last.
+ *
+ * Client to server:
+ * JOIN:      lobby, name, player count (int), role count (int), the minimum and maximum of
+ *            each role in Role order (ints), round mode (byte, 1 or 0), then the number of those
+ *            seats played by bots (int). The first JOIN of a lobby sets its player count, role
+ *            restrictions, mode and bots, and the game starts once the other seats are taken.
+ *            Later JOINs must send the same settings or get an ERROR.
+ *            In round mode every player selects at the start of each round and the round is
+ *            resolved once all of them have. Bots also take over the seats of players who
+ *            disconnect.
+ * SELECT:    target id (int, Game.NO_TARGET for no target). Only accepted on your turn, or
+ *            once per round in round mode.
+ *
+ * Server to client:
+ * START:     your player id (int), player count (int), then each player's name in id order.
+ * VIEW:      the changes to your view since the last VIEW, sent only when something changed.
+ *            TCP delivers frames in order, so every VIEW applies to the view the previous one
+ *            left behind, starting from an empty view after START. A flags byte comes first:
+ *            VIEW_SILENCED  you cannot speak (the current value, not a change).
+ *            VIEW_ROLE      your role changed: role ordinal (varint).
+ *            VIEW_CLEAR     your messages started over for a new turn, before any below.
+ *            VIEW_MESSAGES  message events were added: the number put before your messages
+ *                           (varint) and those events, then the number put after them
+ *                           (varint) and those events. An event is its Message.Type ordinal
+ *                           (byte), then for SUCCESS, FAILURE and REVEAL the target id (varint),
+ *                           then for REVEAL the role ordinal (byte).
+ *            VIEW_YOUR_TURN it is your turn (or a new round): the number of players whose legal-target status
+ *                           flipped since your last turn (varint), then their ids in increasing
+ *                           order, each as the gap from the previous id (varint, the first from
+ *                           0).
+ * GAME_OVER: winning side (string).
+ * ERROR:     reason (string).
+ */
+public final class Protocol {
+    public static final byte JOIN = 1;
+    public static final byte SELECT = 2;
+    public static final byte START = 10;
+    public static final byte VIEW = 11;
+    public static final byte GAME_OVER = 12;
+    public static final byte ERROR = 13;
+
+    public static final int VIEW_SILENCED = 1;
+    public static final int VIEW_ROLE = 2;
+    public static final int VIEW_CLEAR = 4;
+    public static final int VIEW_MESSAGES = 8;
+    public static final int VIEW_YOUR_TURN = 16;
+
+    public static final int MAX_FRAME = 1 << 20; // longer frames close the connection
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Protocol() {}
+
+    /**
+     * Builds a single frame.
+     */
+    static class FrameBuilder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        FrameBuilder(byte type) {
+            try {
+                out.writeInt(0); // length, filled in by build
+                out.writeByte(type);
+            } catch (IOException e) {
+                throw new AssertionError("Something Broke!", e);
+            }
+        }
+
+        FrameBuilder putInt(int v) {
+            try {
+                out.writeInt(v);
+            } catch (IOException e) {
+                throw new AssertionError("Something Broke!", e);
+            }
+            return this;
+        }
+
+        FrameBuilder putByte(int v) {
+            bytes.write(v);
+            return this;
+        }
+
+        FrameBuilder putString(String s) {
+            byte[] b = s.getBytes(UTF_8);
+            putInt(b.length);
+            bytes.write(b, 0, b.length);
+            return this;
+        }
+
+        /**
+         * @return - The frame, ready to be written.
+         */
+        ByteBuffer build() {
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            frame.putInt(0, frame.capacity() - 4);
+            return frame;
+        }
+    }
+
+    /**
+     * Reads a string written by FrameBuilder.putString.
+     * @param frame - The frame, positioned at the string.
+     * @return - The string.
+     */
+    static String getString(ByteBuffer frame) {
+        int length = frame.getInt();
+        if (length < 0 || length > frame.remaining()) throw new IllegalArgumentException("Bad string length");
+        String s = new String(frame.array(), frame.arrayOffset() + frame.position(), length, UTF_8);
+        frame.position(frame.position() + length);
+        return s;
+    }
+
+    static void putVarint(ByteBuffer frame, int v) {
+        while ((v & ~0x7F) != 0) {
+            frame.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        frame.put((byte) v);
+    }
+
+    static int getVarint(ByteBuffer frame) {
+        int v = 0;
+        for (int shift=0;shift<35;shift+=7) {
+            byte b = frame.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    static ByteBuffer error(String reason) {
+        return new FrameBuilder(ERROR).putString(reason).build();
+    }
+}
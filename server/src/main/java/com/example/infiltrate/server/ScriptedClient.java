@@ -0,0 +1,91 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.Game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * A player driven by frames from the server rather than by a person, used to load the server. It
+ * joins a lobby as soon as it connects and, whenever a VIEW says it is its turn, selects one of
+ * its legal targets (or no target) at random.
+ */
+class ScriptedClient {
+    private final Connection connection;
+    private final Random random;
+    private final PlayerView view = new PlayerView();
+    private final ByteBuffer select = ByteBuffer.allocate(9); // reused SELECT frame
+    private int player = -1; // our id, once the game has started
+    private int selections;
+    private String winner; // null until the game is over
+    private String error; // last ERROR from the server
+
+    /**
+     * Sends the JOIN for a lobby.
+     * @param connection - A connection to the server.
+     * @param lobby - The lobby to join.
+     * @param name - The player's name.
+     * @param playerCount - The number of players the game starts with.
+     * @param minimums - The minimum of each role, indexed by Role ordinal.
+     * @param maximums - The maximum of each role, indexed by Role ordinal.
+     * @param rounds - Whether the lobby plays in rounds.
+     * @param botCount - The number of seats played by bots.
+     * @param random - Picks the targets.
+     * @throws IOException - If the connection failed.
+     */
+    ScriptedClient(Connection connection, String lobby, String name, int playerCount,
+                   int[] minimums, int[] maximums, boolean rounds, int botCount, Random random) throws IOException {
+        this.connection = connection;
+        this.random = random;
+        connection.attachment = this;
+        Protocol.FrameBuilder join = new Protocol.FrameBuilder(Protocol.JOIN)
+                .putString(lobby).putString(name).putInt(playerCount).putInt(minimums.length);
+        for (int i=0;i<minimums.length;i++) join.putInt(minimums[i]).putInt(maximums[i]);
+        send(join.putByte(rounds ? 1 : 0).putInt(botCount).build());
+    }
+
+    boolean isDone() { return winner != null || error != null; }
+    String getWinner() { return winner; }
+    String getError() { return error; }
+    int getSelections() { return selections; }
+
+    /**
+     * Reacts to a frame from the server.
+     * @param frame - The frame, positioned at its type.
+     * @throws IOException - If the connection failed.
+     */
+    void handle(ByteBuffer frame) throws IOException {
+        switch (frame.get()) {
+            case Protocol.START:
+                player = frame.getInt();
+                return;
+            case Protocol.VIEW:
+                view.apply(frame);
+                if (!view.isYourTurn()) return;
+                view.endTurn();
+                // Every target, plus no target, is equally likely
+                BitSet targets = view.getTargets();
+                int target = targets.nextSetBit(0);
+                for (int skip=random.nextInt(targets.cardinality() + 1);skip>0;skip--) target = targets.nextSetBit(target + 1);
+                select.clear();
+                select.putInt(5).put(Protocol.SELECT).putInt(target < 0 ? Game.NO_TARGET : target).flip();
+                send(select);
+                selections++;
+                return;
+            case Protocol.GAME_OVER:
+                winner = Protocol.getString(frame);
+                return;
+            case Protocol.ERROR:
+                error = Protocol.getString(frame);
+                return;
+            default:
+                throw new IOException("Unknown frame type");
+        }
+    }
+
+    private void send(ByteBuffer frame) throws IOException {
+        if (connection.send(frame)) connection.watchWrites();
+    }
+}
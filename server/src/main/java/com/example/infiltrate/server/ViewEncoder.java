@@ -0,0 +1,119 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.Game;
+import com.example.infiltrate.engine.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Remembers the view one player has been sent and encodes VIEW frames with only what changed
+ * since. Everything is reused between frames, so encoding does not allocate once the buffers
+ * have grown to fit the game.
+ */
+class ViewEncoder {
+    private Game.Role role; // null until the first VIEW
+    private boolean silenced;
+    private int turn = -1;
+    private final ArrayList<Message> messages = new ArrayList<>(); // as the player was last sent them
+    private final BitSet targets = new BitSet(); // legal targets as of the player's last turn
+    private final BitSet changedTargets = new BitSet(); // scratch: targets xor the new targets
+
+    /**
+     * @param messageCount - The number of messages the player has.
+     * @param playerCount - The number of players in the game.
+     * @return - The most bytes a VIEW frame can take.
+     */
+    static int maxFrameLength(int messageCount, int playerCount) {
+        return 4 + 1 + 1 + 5 + 5 + 5 + messageCount * 7 + 5 + playerCount * 5;
+    }
+
+    /**
+     * Writes a VIEW frame with the changes to a player's view, if there are any.
+     * @param game - The game.
+     * @param player - The id of the player.
+     * @param yourTurn - Whether it is now the player's turn, which sends their targets.
+     * @param legalTargets - Scratch set for the player's legal targets.
+     * @param out - Where to write the frame, with at least maxFrameLength bytes remaining.
+     * @return - False if nothing changed and nothing was written.
+     */
+    boolean encode(Game game, int player, boolean yourTurn, BitSet legalTargets, ByteBuffer out) {
+        Game.Role newRole = game.getPlayerRole(player);
+        boolean newSilenced = game.isPlayerSilenced(player);
+        int newTurn = game.getPlayerTurn(player);
+        int count = game.getPlayerMessageCount(player);
+
+        // The new messages are the old ones with events put before them (a death or replacement)
+        // and after them, unless the turn has moved on and they started over
+        int before = -1;
+        if (newTurn == turn) {
+            for (int k=0;k+messages.size()<=count && before<0;k++) {
+                boolean match = true;
+                for (int i=0;i<messages.size() && match;i++) match = game.getPlayerMessageAt(player, k + i) == messages.get(i);
+                if (match) before = k;
+            }
+        }
+        boolean clear = before < 0;
+        if (clear) before = 0;
+        int after = count - before - (clear ? 0 : messages.size());
+
+        int flags = 0;
+        if (newSilenced) flags |= Protocol.VIEW_SILENCED;
+        if (newRole != role) flags |= Protocol.VIEW_ROLE;
+        if (clear && !messages.isEmpty()) flags |= Protocol.VIEW_CLEAR;
+        if (before > 0 || after > 0) flags |= Protocol.VIEW_MESSAGES;
+        if (yourTurn) flags |= Protocol.VIEW_YOUR_TURN;
+        if ((flags & ~Protocol.VIEW_SILENCED) == 0 && newSilenced == silenced) return false;
+
+        int start = out.position();
+        out.putInt(0); // length, filled in below
+        out.put(Protocol.VIEW);
+        out.put((byte) flags);
+        if ((flags & Protocol.VIEW_ROLE) != 0) Protocol.putVarint(out, newRole.ordinal());
+        if ((flags & Protocol.VIEW_MESSAGES) != 0) {
+            Protocol.putVarint(out, before);
+            for (int i=0;i<before;i++) putMessage(out, game.getPlayerMessageAt(player, i));
+            Protocol.putVarint(out, after);
+            for (int i=count-after;i<count;i++) putMessage(out, game.getPlayerMessageAt(player, i));
+        }
+        if (yourTurn) {
+            game.getLegalTargets(player, legalTargets);
+            changedTargets.clear();
+            changedTargets.or(targets);
+            changedTargets.xor(legalTargets);
+            Protocol.putVarint(out, changedTargets.cardinality());
+            int previous = 0;
+            for (int t=changedTargets.nextSetBit(0);t>=0;t=changedTargets.nextSetBit(t+1)) {
+                Protocol.putVarint(out, t - previous);
+                previous = t;
+            }
+            targets.clear();
+            targets.or(legalTargets);
+        }
+        out.putInt(start, out.position() - start - 4);
+
+        role = newRole;
+        silenced = newSilenced;
+        turn = newTurn;
+        messages.clear();
+        for (int i=0;i<count;i++) messages.add(game.getPlayerMessageAt(player, i));
+        return true;
+    }
+
+    private static void putMessage(ByteBuffer out, Message m) {
+        out.put((byte) m.type.ordinal());
+        switch (m.type) {
+            case SUCCESS:
+            case FAILURE:
+                Protocol.putVarint(out, m.target);
+                break;
+            case REVEAL:
+                Protocol.putVarint(out, m.target);
+                out.put((byte) m.role.ordinal());
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.infiltrate.server;
+
+import com.example.infiltrate.engine.Game;
+import com.example.infiltrate.engine.GameRandom;
+import com.example.infiltrate.engine.Message;
+import com.example.infiltrate.engine.Simulator;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays seeded games and checks that a PlayerView kept up to date with VIEW deltas always
+ * matches both the game and a view decoded from a single full VIEW.
+ */
+public class ViewEncoderTest {
+    private static final int PLAYERS = 8;
+
+    @Test
+    public void deltasReproduceFullView() {
+        for (long seed=0;seed<20;seed++) {
+            Game game = newGame(seed);
+            Random random = new Random(seed);
+            ViewEncoder[] encoders = new ViewEncoder[PLAYERS];
+            PlayerView[] views = new PlayerView[PLAYERS];
+            for (int p=0;p<PLAYERS;p++) {
+                encoders[p] = new ViewEncoder();
+                views[p] = new PlayerView();
+            }
+            BitSet legal = new BitSet();
+            for (int turn=0;;turn++) {
+                int current = game.getCurrentPlayer();
+                for (int p=0;p<PLAYERS;p++) {
+                    send(encoders[p], views[p], game, p, p == current);
+                    String where = "seed " + seed + " turn " + turn + " player " + p;
+                    assertMatchesGame(where, views[p], game, p, p == current);
+                    PlayerView full = new PlayerView();
+                    send(new ViewEncoder(), full, game, p, p == current);
+                    assertSameView(where, full, views[p]);
+                    views[p].endTurn();
+                }
+                int target = Simulator.RANDOM_TARGETS.select(game, current, game.getLegalTargets(current, legal), random);
+                game.setSelection(current, target);
+                game.doTurn();
+                if (game.checkWin()) break;
+                game.balance();
+            }
+        }
+    }
+
+    @Test
+    public void unchangedViewIsNotSent() {
+        Game game = newGame(1);
+        ViewEncoder encoder = new ViewEncoder();
+        ByteBuffer frame = newBuffer(game, 0);
+        BitSet legal = new BitSet();
+        assertTrue(encoder.encode(game, 0, false, legal, frame));
+        int position = frame.position();
+        assertFalse(encoder.encode(game, 0, false, legal, frame));
+        assertEquals(position, frame.position());
+    }
+
+    // HELPER METHODS //
+
+    private static Game newGame(long seed) {
+        ArrayList<String> names = new ArrayList<>();
+        for (int i=0;i<PLAYERS;i++) names.add("P" + i);
+        int[] minimums = new int[Game.Role.values().length];
+        int[] maximums = new int[Game.Role.values().length];
+        Arrays.fill(maximums, PLAYERS);
+        minimums[Game.Role.CITIZEN.ordinal()] = 1;
+        minimums[Game.Role.INFILTRATOR.ordinal()] = 1;
+        return new Game(names, minimums, maximums, new GameRandom(seed));
+    }
+
+    private static ByteBuffer newBuffer(Game game, int player) {
+        return ByteBuffer.allocate(ViewEncoder.maxFrameLength(game.getPlayerMessageCount(player), game.getPlayerCount()));
+    }
+
+    /**
+     * Encodes a player's view and, if anything changed, applies the frame the way a client does.
+     */
+    private static void send(ViewEncoder encoder, PlayerView view, Game game, int player, boolean yourTurn) {
+        ByteBuffer frame = newBuffer(game, player);
+        if (!encoder.encode(game, player, yourTurn, new BitSet(), frame)) return;
+        frame.flip();
+        assertEquals(frame.remaining() - 4, frame.getInt());
+        assertEquals(Protocol.VIEW, frame.get());
+        view.apply(frame);
+        assertFalse(frame.hasRemaining());
+    }
+
+    private static void assertMatchesGame(String where, PlayerView view, Game game, int player, boolean yourTurn) {
+        assertEquals(where, game.getPlayerRole(player), view.getRole());
+        assertEquals(where, game.isPlayerSilenced(player), view.isSilenced());
+        assertEquals(where, game.getPlayerMessageCount(player), view.getMessageCount());
+        for (int i=0;i<view.getMessageCount();i++) {
+            assertSameMessage(where, game.getPlayerMessageAt(player, i), view.getMessage(i));
+        }
+        assertEquals(where, game.getPlayerMessage(player), view.render(game.getPlayerNames()));
+        assertEquals(where, yourTurn, view.isYourTurn());
+        if (yourTurn) assertEquals(where, game.getLegalTargets(player, new BitSet()), view.getTargets());
+    }
+
+    private static void assertSameView(String where, PlayerView expected, PlayerView actual) {
+        assertEquals(where, expected.getRole(), actual.getRole());
+        assertEquals(where, expected.isSilenced(), actual.isSilenced());
+        assertEquals(where, expected.getMessageCount(), actual.getMessageCount());
+        for (int i=0;i<expected.getMessageCount();i++) {
+            assertSameMessage(where, expected.getMessage(i), actual.getMessage(i));
+        }
+        if (expected.isYourTurn()) assertEquals(where, expected.getTargets(), actual.getTargets());
+    }
+
+    private static void assertSameMessage(String where, Message expected, Message actual) {
+        assertEquals(where, expected.type, actual.type);
+        assertEquals(where, expected.target, actual.target);
+        assertEquals(where, expected.role, actual.role);
+    }
+}